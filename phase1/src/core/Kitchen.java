@@ -8,6 +8,7 @@ import util.InvalidIngredientException;
 import util.Log;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Optional;
 
 /**
@@ -17,7 +18,7 @@ public class Kitchen {
 	private final Restaurant restaurant;
 	private final ArrayList<Cook> cooks;
 	private final ArrayList<Server> servers;
-	private final ArrayList<Order> allOrders; // All of the kitchen's orders
+	private final HashMap<Integer, Order> allOrders; // All of the kitchen's orders, by order number
 	private final Statistics statistics; // Tracks orders stats like number of times each item has been ordered
 
 	/**
@@ -30,7 +31,7 @@ public class Kitchen {
 		this.cooks = new ArrayList<>();
 		statistics = new Statistics(restaurant.getMenu(), restaurant.getIngredientManager().getIngredients());
 		this.servers = new ArrayList<>();
-		this.allOrders = new ArrayList<>();
+		this.allOrders = new HashMap<>();
 	}
 
 	/**
@@ -108,8 +109,7 @@ public class Kitchen {
 	 * @return a Order with a given order number, or null of the order does not exist.
 	 */
 	public Order getOrder(int orderNumber) {
-		Optional<Order> order = this.allOrders.stream().filter(a -> a.getOrderNumber() == orderNumber).findFirst();
-		return order.orElse(null);
+		return this.allOrders.get(orderNumber);
 	}
 
 	/**
@@ -118,7 +118,7 @@ public class Kitchen {
 	 * @param order the order to be added.
 	 */
 	public void addOrderReference(Order order) {
-		allOrders.add(order);
+		allOrders.put(order.getOrderNumber(), order);
 	}
 
 	/**
@@ -24,8 +24,9 @@ public class Statistics {
 	 * Prints each ingredient and the current usage of each ingredient.
 	 */
 	public void printIngredients() {
-		ingredients.sort(Ingredient::compareTo);
-		for (Ingredient ingredient : ingredients) {
+		ArrayList<Ingredient> sorted = new ArrayList<>(ingredients);
+		sorted.sort(Ingredient::compareTo);
+		for (Ingredient ingredient : sorted) {
 			System.out.printf("\t%s %d%n", ingredient.getDisplayName(), ingredient.getUsage());
 		}
 	}
@@ -34,8 +35,9 @@ public class Statistics {
 	 * Prints each MenuItem and the current usage of each MenuItem.
 	 */
 	public void printMenuItems() {
-		menuItems.sort(MenuItem::compareTo);
-		for (MenuItem menuItem : menuItems) {
+		ArrayList<MenuItem> sorted = new ArrayList<>(menuItems);
+		sorted.sort(MenuItem::compareTo);
+		for (MenuItem menuItem : sorted) {
 			System.out.printf("\t%s %d%n", menuItem.getName(), menuItem.getUsage());
 		}
 	}
@@ -0,0 +1,179 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A file that is only ever replaced whole, keeping its previous generation.
+ * <p>
+ * A new version is written to a temporary file and forced to the disk, the current version becomes the previous
+ * generation, and the temporary file is renamed into place; the directory is then forced so that both renames
+ * survive a crash. Each version is sealed with a CRC-32 of its contents, as {"crc32":"(hex)","data":(contents)},
+ * so it stays valid JSON. On read, a version that is torn, corrupt or missing is skipped for the previous
+ * generation, which is only ever one rename behind. Files written by earlier versions, without a seal, are read
+ * as they are.
+ */
+class AtomicFile {
+	private static final byte[] SEAL = "{\"crc32\":\"".getBytes(StandardCharsets.UTF_8); // Start of a sealed file
+	private static final byte[] DATA = "\",\"data\":".getBytes(StandardCharsets.UTF_8); // Between checksum and data
+	private static final byte[] END = "}\n".getBytes(StandardCharsets.UTF_8); // End of a sealed file
+	private static final int HEADER = SEAL.length + 8 + DATA.length; // Bytes before the data
+
+	private final File file; // The current generation
+	private final File previous; // The previous generation
+	private final File temp; // The next generation, while it is written
+	private boolean readPrevious = false; // If the last read fell back to the previous generation
+
+	/**
+	 * Creates an AtomicFile.
+	 *
+	 * @param file the file; its previous generation is kept next to it with a ".prev" suffix.
+	 */
+	AtomicFile(File file) {
+		this.file = file;
+		this.previous = new File(file.getPath() + ".prev");
+		this.temp = new File(file.getPath() + ".tmp");
+	}
+
+	/**
+	 * Reads the current generation, or the previous one if the current one is missing or damaged.
+	 *
+	 * @return the contents, or null if neither generation can be read intact.
+	 * @throws IOException if a generation exists but cannot be read.
+	 */
+	synchronized String read() throws IOException {
+		readPrevious = false;
+		String data = read(file);
+		if (data != null) return data;
+
+		data = read(previous);
+		if (data != null) {
+			if (file.exists()) System.err.println(file + " is damaged, reading " + previous + " instead");
+			readPrevious = true;
+		}
+		return data;
+	}
+
+	/**
+	 * Returns whether the last read fell back to the previous generation.
+	 *
+	 * @return true if the previous generation was read.
+	 */
+	synchronized boolean readPrevious() {
+		return readPrevious;
+	}
+
+	/**
+	 * Replaces the file, keeping the current version as the previous generation.
+	 *
+	 * @param data the new contents.
+	 * @throws IOException if the file cannot be written; the current version is then left in place.
+	 */
+	synchronized void write(String data) throws IOException {
+		byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		byte[] checksum = String.format("%08x", crc.getValue()).getBytes(StandardCharsets.UTF_8);
+
+		write(temp, SEAL, checksum, DATA, bytes, END);
+		if (file.exists()) {
+			Files.move(file.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory(file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Replaces a file with the contents written to a temporary file and forced to the disk, without a seal or a
+	 * previous generation; for files other programs read, such as requests.txt.
+	 *
+	 * @param file the file.
+	 * @param data the new contents.
+	 * @throws IOException if the file cannot be written; the previous contents are then left in place.
+	 */
+	static void replace(File file, String data) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		write(temp, data.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory(file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Forces a directory to the disk, so that renames within it survive a crash. Some platforms cannot open a
+	 * directory; the renames are then as durable as the platform makes them.
+	 *
+	 * @param directory the directory.
+	 */
+	static void forceDirectory(File directory) {
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ignored) {
+			// Not supported here
+		}
+	}
+
+	/**
+	 * Reads a sealed file and verifies its checksum.
+	 *
+	 * @return the contents, or null if the file is missing or damaged.
+	 */
+	private static String read(File file) throws IOException {
+		if (!file.exists()) return null;
+
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		if (!startsWith(bytes, SEAL, 0)) {
+			// Written by an earlier version; empty if it was truncated while being rewritten
+			return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		int length = bytes.length - HEADER - END.length;
+		if (length < 0 || !startsWith(bytes, DATA, SEAL.length + 8)
+				|| !startsWith(bytes, END, bytes.length - END.length)) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, HEADER, length);
+		try {
+			String checksum = new String(bytes, SEAL.length, 8, StandardCharsets.UTF_8);
+			if (Long.parseLong(checksum, 16) != crc.getValue()) return null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return new String(bytes, HEADER, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes parts to a file, truncating it, and forces it to the disk.
+	 */
+	private static void write(File file, byte[]... parts) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (byte[] part : parts) {
+				ByteBuffer buffer = ByteBuffer.wrap(part);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Returns whether bytes contain a prefix at an offset.
+	 */
+	private static boolean startsWith(byte[] bytes, byte[] prefix, int offset) {
+		if (offset < 0 || offset + prefix.length > bytes.length) return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[offset + i] != prefix[i]) return false;
+		}
+		return true;
+	}
+}
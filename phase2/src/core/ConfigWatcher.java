@@ -0,0 +1,96 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches configuration files, such as menu.json and ingredients.json, and reloads them when they are saved.
+ * <p>
+ * Editors often save a file in several writes, so a change is only acted on once the file has been quiet for
+ * QUIET_MILLIS. Reloads run on the watcher's own thread, and a reload that fails, e.g. because the file is
+ * half-written or malformed, is reported and leaves the current configuration in place.
+ */
+class ConfigWatcher {
+	static final long QUIET_MILLIS = 200; // How long a file must be unchanged before it is reloaded
+
+	private final HashMap<Path, HashMap<String, Runnable>> reloads = new HashMap<>(); // By directory, then name
+	private WatchService watcher; // Null until started, or if watching is not supported
+
+	/**
+	 * Reloads a file whenever it is saved.
+	 *
+	 * @param file   the file.
+	 * @param reload reloads it.
+	 */
+	void watch(File file, Runnable reload) {
+		Path directory = file.getAbsoluteFile().getParentFile().toPath();
+		reloads.computeIfAbsent(directory, key -> new HashMap<>()).put(file.getName(), reload);
+	}
+
+	/**
+	 * Starts watching, on a daemon thread of its own.
+	 */
+	void start() {
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			for (Path directory : reloads.keySet()) {
+				directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+		} catch (IOException | UnsupportedOperationException e) {
+			System.err.println("Unable to watch the configuration for changes: " + e.getMessage());
+			return;
+		}
+
+		Thread thread = new Thread(this::run, "config-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for changes, and reloads the changed files once they are quiet.
+	 */
+	private void run() {
+		try {
+			while (true) {
+				LinkedHashSet<Runnable> changed = new LinkedHashSet<>();
+				WatchKey key = watcher.take();
+				while (key != null) {
+					collect(key, changed);
+					key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				for (Runnable reload : changed) {
+					try {
+						reload.run();
+					} catch (RuntimeException e) {
+						System.err.println("Unable to reload the configuration: "
+								+ (e.getCause() == null ? e : e.getCause()));
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	/**
+	 * Adds the reloads of the files a key reports as changed, and resets the key.
+	 */
+	private void collect(WatchKey key, LinkedHashSet<Runnable> changed) {
+		HashMap<String, Runnable> files = reloads.get((Path) key.watchable());
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changed.addAll(files.values()); // Events were lost; reload everything watched here
+			} else {
+				Runnable reload = files.get(event.context().toString());
+				if (reload != null) changed.add(reload);
+			}
+		}
+		key.reset();
+	}
+}
@@ -0,0 +1,266 @@
+package core;
+
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores a Restaurant in an embedded H2 database, resources/data/restaurant.mv.db.
+ * <p>
+ * The snapshot and the accounts are documents, journal records and payments are rows numbered in the order they
+ * were added, and rollups are rows keyed by business date. Payments are indexed by business date, so reading a
+ * date only reads that date's payments. Every change is a transaction of its own. The accounts are copied from
+ * the accounts file the first time the database is opened, and read from the database after that.
+ */
+public class DatabaseStorage implements StorageBackend {
+	private static final String[] SCHEMA = {
+			"CREATE TABLE IF NOT EXISTS documents (name VARCHAR(32) PRIMARY KEY, data CLOB NOT NULL)",
+			"CREATE TABLE IF NOT EXISTS journal (seq BIGINT AUTO_INCREMENT PRIMARY KEY, rotated BOOLEAN NOT NULL, "
+					+ "record CLOB NOT NULL)",
+			"CREATE TABLE IF NOT EXISTS payments (seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+					+ "business_date VARCHAR(10) NOT NULL, record CLOB NOT NULL)",
+			"CREATE INDEX IF NOT EXISTS payments_by_date ON payments (business_date, seq)",
+			"CREATE TABLE IF NOT EXISTS rollups (business_date VARCHAR(10) PRIMARY KEY, data CLOB NOT NULL)"
+	};
+
+	private final Connection connection; // The database, used by one statement at a time
+
+	/**
+	 * A unit of work against the database.
+	 */
+	private interface Work<T> {
+		T run() throws SQLException;
+	}
+
+	/**
+	 * Opens the database, creating it and its tables if they do not exist.
+	 *
+	 * @param data     the directory of the restaurant's data, e.g. resources/data.
+	 * @param accounts the accounts file to copy the accounts from when the database is created.
+	 * @throws IllegalStateException if the database cannot be opened, e.g. the H2 driver is missing.
+	 */
+	public DatabaseStorage(File data, File accounts) {
+		try {
+			// Closed by close(), after the last records have been committed
+			connection = DriverManager.getConnection(
+					"jdbc:h2:" + new File(data, "restaurant").getAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE");
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				for (String sql : SCHEMA) {
+					statement.execute(sql);
+				}
+			}
+			connection.commit();
+
+			if (readDocument("accounts") == null) {
+				writeDocument("accounts", JsonFileStorage.readAccounts(accounts).toJSONString());
+			}
+		} catch (SQLException | IOException e) {
+			throw new IllegalStateException("Unable to open the database in " + data, e);
+		}
+	}
+
+	@Override
+	public String readSnapshot() throws IOException {
+		return readDocument("snapshot");
+	}
+
+	@Override
+	public void writeSnapshot(String snapshot) throws IOException {
+		writeDocument("snapshot", snapshot);
+	}
+
+	@Override
+	public void appendJournal(List<String> records) throws IOException {
+		transaction(() -> {
+			try (PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO journal (rotated, record) VALUES (FALSE, ?)")) {
+				for (String record : records) {
+					insert.setString(1, record);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void rotateJournal() throws IOException {
+		update("UPDATE journal SET rotated = TRUE WHERE rotated = FALSE");
+	}
+
+	@Override
+	public void dropRotatedJournal() throws IOException {
+		update("DELETE FROM journal WHERE rotated = TRUE");
+	}
+
+	@Override
+	public void replayJournal(Consumer<String> record) throws IOException {
+		List<String> records = transaction(() -> query("SELECT record FROM journal ORDER BY seq"));
+		records.forEach(record);
+	}
+
+	@Override
+	public void appendPayment(LocalDate date, String record) throws IOException {
+		transaction(() -> {
+			try (PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO payments (business_date, record) VALUES (?, ?)")) {
+				insert.setString(1, date.toString());
+				insert.setString(2, record);
+				insert.executeUpdate();
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void readPayments(LocalDate date, Consumer<String> record) throws IOException {
+		List<String> records = transaction(() ->
+				query("SELECT record FROM payments WHERE business_date = ? ORDER BY seq", date.toString()));
+		records.forEach(record);
+	}
+
+	@Override
+	public long getPaymentsExtent(LocalDate date) throws IOException {
+		List<String> extent = transaction(() ->
+				query("SELECT COALESCE(MAX(seq), 0) FROM payments WHERE business_date = ?", date.toString()));
+		return Long.parseLong(extent.get(0));
+	}
+
+	@Override
+	public List<LocalDate> getPaymentDates() throws IOException {
+		List<LocalDate> dates = new ArrayList<>();
+		for (String date : transaction(() -> query("SELECT DISTINCT business_date FROM payments"))) {
+			dates.add(LocalDate.parse(date));
+		}
+		return dates;
+	}
+
+	@Override
+	public String readRollup(LocalDate date) throws IOException {
+		List<String> rollup = transaction(() ->
+				query("SELECT data FROM rollups WHERE business_date = ?", date.toString()));
+		return rollup.isEmpty() ? null : rollup.get(0);
+	}
+
+	@Override
+	public void writeRollup(LocalDate date, String rollup) throws IOException {
+		replace("rollups", "business_date", date.toString(), rollup);
+	}
+
+	@Override
+	public JSONArray readAccounts() throws IOException {
+		try {
+			return (JSONArray) new JSONParser().parse(readDocument("accounts"));
+		} catch (ParseException | ClassCastException | NullPointerException e) {
+			throw new IOException("Malformed accounts in the database", e);
+		}
+	}
+
+	@Override
+	public void sync() throws IOException {
+		update("CHECKPOINT SYNC");
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Reads a document.
+	 *
+	 * @return the document, or null if there is none.
+	 */
+	private String readDocument(String name) throws IOException {
+		List<String> document = transaction(() -> query("SELECT data FROM documents WHERE name = ?", name));
+		return document.isEmpty() ? null : document.get(0);
+	}
+
+	/**
+	 * Writes a document, replacing the previous one.
+	 */
+	private void writeDocument(String name, String data) throws IOException {
+		replace("documents", "name", name, data);
+	}
+
+	/**
+	 * Replaces the data of a keyed row, in one transaction.
+	 */
+	private void replace(String table, String key, String value, String data) throws IOException {
+		transaction(() -> {
+			try (PreparedStatement delete = connection.prepareStatement(
+					"DELETE FROM " + table + " WHERE " + key + " = ?");
+				 PreparedStatement insert = connection.prepareStatement(
+						 "INSERT INTO " + table + " (" + key + ", data) VALUES (?, ?)")) {
+				delete.setString(1, value);
+				delete.executeUpdate();
+				insert.setString(1, value);
+				insert.setString(2, data);
+				insert.executeUpdate();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Runs an update in a transaction of its own.
+	 */
+	private void update(String sql) throws IOException {
+		transaction(() -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate(sql);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Runs a query and returns the first column of every row, as strings.
+	 */
+	private List<String> query(String sql, String... parameters) throws SQLException {
+		try (PreparedStatement query = connection.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.length; i++) {
+				query.setString(i + 1, parameters[i]);
+			}
+			ArrayList<String> rows = new ArrayList<>();
+			try (ResultSet result = query.executeQuery()) {
+				while (result.next()) {
+					rows.add(result.getString(1));
+				}
+			}
+			return rows;
+		}
+	}
+
+	/**
+	 * Runs work in a transaction of its own, committing it if it succeeds and rolling it back otherwise.
+	 */
+	private synchronized <T> T transaction(Work<T> work) throws IOException {
+		try {
+			T result = work.run();
+			connection.commit();
+			return result;
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException ignored) {
+				// The original failure is the one worth reporting
+			}
+			throw new IOException(e);
+		}
+	}
+}
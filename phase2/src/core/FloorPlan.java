@@ -0,0 +1,126 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tables of a restaurant, as laid out by the "table_layout" setting.
+ * <p>
+ * Tables are numbered from 1 in the order of the layout, and looked up by number in an array, so finding a table
+ * does not depend on how many there are. Tables are also bucketed by the number of seats, and each bucket has a
+ * bitset of the numbers of its free tables, kept up to date as tables are seated or get their first order and as
+ * they are cleared; finding a free table for a party (see SeatEvent) looks at one bitset per table size, however
+ * many tables there are.
+ */
+public class FloorPlan {
+	private final ArrayList<Table> tables = new ArrayList<>(); // Every table, by number
+	private final Table[] byNumber; // Every table, indexed by its number; null at index 0
+	private final List<Table>[] bySeats; // The tables with each number of seats, indexed by the number of seats
+	private final BitSet[] free; // The numbers of the free tables with each number of seats
+
+	/**
+	 * Creates a FloorPlan from the "table_layout" setting.
+	 *
+	 * @param layout how many tables there are with 1, 2, 3, ... seats, in the format of "table_layout".
+	 */
+	@SuppressWarnings("unchecked")
+	public FloorPlan(List<Long> layout) {
+		int tableNum = 1;
+		bySeats = new List[layout.size() + 1];
+		free = new BitSet[layout.size() + 1];
+		bySeats[0] = Collections.emptyList();
+		free[0] = new BitSet();
+
+		for (int seats = 1; seats <= layout.size(); seats++) {
+			ArrayList<Table> bucket = new ArrayList<>();
+			free[seats] = new BitSet();
+			for (long i = 0; i < layout.get(seats - 1); i++) {
+				Table table = new Table(tableNum++, seats);
+				table.setOnChange(this::occupancyChanged);
+				tables.add(table);
+				bucket.add(table);
+				free[seats].set(table.getTableNumber());
+			}
+			bySeats[seats] = Collections.unmodifiableList(bucket);
+		}
+
+		byNumber = new Table[tableNum];
+		tables.forEach(table -> byNumber[table.getTableNumber()] = table);
+	}
+
+	/**
+	 * Gets the table with the specified table number.
+	 *
+	 * @param tableNumber the number of the table.
+	 * @return the table, or null if there is none with that number.
+	 */
+	public Table getTable(int tableNumber) {
+		return tableNumber > 0 && tableNumber < byNumber.length ? byNumber[tableNumber] : null;
+	}
+
+	/**
+	 * Returns every table.
+	 *
+	 * @return the tables, by number.
+	 */
+	public ArrayList<Table> getTables() {
+		return tables;
+	}
+
+	/**
+	 * Returns the tables with a number of seats.
+	 *
+	 * @param seats the number of seats.
+	 * @return an unmodifiable list of the tables, by number; empty if there are none.
+	 */
+	public List<Table> getTables(int seats) {
+		return seats > 0 && seats < bySeats.length ? bySeats[seats] : Collections.emptyList();
+	}
+
+	/**
+	 * Returns the most seats any table has.
+	 *
+	 * @return the number of seats, 0 if there are no tables.
+	 */
+	public int getMaxSeats() {
+		for (int seats = bySeats.length - 1; seats > 0; seats--) {
+			if (!bySeats[seats].isEmpty()) return seats;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the smallest free table that can seat a party, the lowest numbered of its size.
+	 *
+	 * @param partySize the number of people in the party.
+	 * @return the table, or null if no free table is large enough.
+	 */
+	public synchronized Table getFreeTable(int partySize) {
+		for (int seats = Math.max(partySize, 1); seats < free.length; seats++) {
+			int tableNumber = free[seats].nextSetBit(0);
+			if (tableNumber >= 0) return byNumber[tableNumber];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns how many tables with a number of seats are free.
+	 *
+	 * @param seats the number of seats.
+	 * @return the number of free tables.
+	 */
+	public synchronized int getFreeCount(int seats) {
+		return seats > 0 && seats < free.length ? free[seats].cardinality() : 0;
+	}
+
+	/**
+	 * Moves a table in or out of the free index. Called whenever it is occupied or cleared.
+	 *
+	 * @param table the table.
+	 */
+	private synchronized void occupancyChanged(Table table) {
+		free[table.getNumberOfSeats()].set(table.getTableNumber(), !table.isOccupied());
+	}
+}
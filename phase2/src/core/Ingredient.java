@@ -1,16 +1,20 @@
 package core;
 
+import java.util.function.Consumer;
+
 /**
  * Represents individual ingredients with the updateUsage of enums (bundled constants).
  */
 public class Ingredient implements Comparable<Ingredient> {
 	private String displayName; // Name displayed to customers
-	private double additionPrice; // Price as an extra addition
+	private volatile double additionPrice; // Price as an extra addition; changed when ingredients.json is reloaded
 	private int amount; // Current stock
 	private int reserved = 0; //The amount of the ingredient that is reserved for pending orders
-	private int threshold; // Minimum threshold to re-order
-	private boolean addable; // If it can be added as extra to orders
-	private int usage; // Amount used from program start
+	private volatile int threshold; // Minimum threshold to re-order
+	private volatile boolean addable; // If it can be added as extra to orders
+	private int usage; // Amount used from program start, as last sampled by Statistics
+	private int id = -1; // Dense id assigned by the IngredientRegistry
+	private Consumer<Ingredient> onChange; // Notified whenever the amount in stock or reserved changes
 
 	/**
 	 * Creates a new ingredient with the specified attributes.
@@ -47,8 +51,21 @@ public class Ingredient implements Comparable<Ingredient> {
 	 *
 	 * @param amount the amount being removed from an ingredient's current amount.
 	 */
-	public void update(int amount) {
+	public synchronized void update(int amount) {
 		this.amount -= amount;
+		changed();
+	}
+
+	/**
+	 * Takes the price, threshold and addability of another version of this ingredient, e.g. when ingredients.json
+	 * is reloaded. The stock is left alone.
+	 *
+	 * @param other the ingredient as now described in ingredients.json.
+	 */
+	void setDetails(Ingredient other) {
+		this.additionPrice = other.additionPrice;
+		this.threshold = other.threshold;
+		this.addable = other.addable;
 	}
 
 	/**
@@ -60,6 +77,40 @@ public class Ingredient implements Comparable<Ingredient> {
 		this.usage = usage;
 	}
 
+	/**
+	 * Returns the registry id of the ingredient.
+	 *
+	 * @return the dense id of this ingredient, or -1 if it is not registered.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the registry id of the ingredient. Only the IngredientRegistry should call this.
+	 *
+	 * @param id the dense id of this ingredient.
+	 */
+	void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Sets the listener notified whenever the amount in stock or reserved changes.
+	 *
+	 * @param onChange the listener, or null for none.
+	 */
+	void setOnChange(Consumer<Ingredient> onChange) {
+		this.onChange = onChange;
+	}
+
+	/**
+	 * Notifies the listener that the amount in stock changed.
+	 */
+	private void changed() {
+		if (onChange != null) onChange.accept(this);
+	}
+
 	/**
 	 * Gets the Display Name of the ingredient.
 	 *
@@ -101,8 +152,9 @@ public class Ingredient implements Comparable<Ingredient> {
 	 *
 	 * @param amount the new amount of an ingredient in stock.
 	 */
-	public void setAmount(int amount) {
+	public synchronized void setAmount(int amount) {
 		this.amount = amount;
+		changed();
 	}
 
 	/**
@@ -110,8 +162,9 @@ public class Ingredient implements Comparable<Ingredient> {
 	 *
 	 * @param amount the amount to increase the ingredient's current stock by.
 	 */
-	public void addAmount(int amount) {
+	public synchronized void addAmount(int amount) {
 		this.amount += amount;
+		changed();
 	}
 
 	/**
@@ -125,15 +178,6 @@ public class Ingredient implements Comparable<Ingredient> {
 		return addable;
 	}
 
-	/**
-	 * Uses the ingredient.
-	 *
-	 * @param usage updateUsage ingredient that many times
-	 */
-	public synchronized void updateUsage(int usage) {
-		this.usage += usage;
-	}
-
 	/**
 	 * Updates the amount of an ingredient.
 	 *
@@ -141,6 +185,7 @@ public class Ingredient implements Comparable<Ingredient> {
 	 */
 	public synchronized void use(int amount) {
 		this.amount -= amount;
+		changed();
 	}
 
 	/**
@@ -150,6 +195,17 @@ public class Ingredient implements Comparable<Ingredient> {
 	 */
 	public synchronized void useReserved(int amount) {
 		this.reserved -= amount;
+		changed();
+	}
+
+	/**
+	 * Sets the reserved amount, when restoring the inventory.
+	 *
+	 * @param reserved the reserved amount.
+	 */
+	synchronized void setReserved(int reserved) {
+		this.reserved = reserved;
+		changed();
 	}
 
 	/**
@@ -160,6 +216,7 @@ public class Ingredient implements Comparable<Ingredient> {
 	public synchronized void redactReserved(int amount) {
 		this.reserved -= amount;
 		this.amount += amount;
+		changed();
 	}
 
 	/**
@@ -170,6 +227,7 @@ public class Ingredient implements Comparable<Ingredient> {
 	public synchronized void reserve(int amount) {
 		this.reserved += amount;
 		this.amount -= amount;
+		changed();
 	}
 
 	/**
@@ -182,7 +240,7 @@ public class Ingredient implements Comparable<Ingredient> {
 	}
 
 	/**
-	 * Gets the number of times ingredient was used
+	 * Gets the number of times ingredient was used, as of the last time Statistics was sampled
 	 *
 	 * @return the number of times ingredient was used
 	 */
@@ -212,6 +270,16 @@ public class Ingredient implements Comparable<Ingredient> {
 		return other instanceof Ingredient && ((Ingredient) other).getDisplayName().equals(this.getDisplayName());
 	}
 
+	/**
+	 * Returns a hash code consistent with equals.
+	 *
+	 * @return the hash code of the display name.
+	 */
+	@Override
+	public int hashCode() {
+		return displayName == null ? 0 : displayName.hashCode();
+	}
+
 	/**
 	 * Returns a String representation of the ingredient.
 	 *
@@ -4,48 +4,100 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
+import util.InvalidIngredientException;
 import util.Log;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * A manager for ingredients.
+ * <p>
+ * The stock comes from the saved inventory, while the price, threshold and addability of each ingredient come
+ * from ingredients.json, which can be reloaded while the restaurant runs. The list of ingredients is replaced
+ * rather than changed when ingredients are added, so it can be read from any thread.
  */
 public class IngredientManager {
-	private final ArrayList<Ingredient> ingredients;//All the ingredients currently in inventory
+	private volatile ArrayList<Ingredient> ingredients;//All the ingredients currently in inventory
+	private final IngredientRegistry registry; // Name and id index over the ingredients
+	private final ReservationEngine reservations; // Applies whole orders to the inventory atomically
+	private final ThresholdWatcher thresholdWatcher; // Tracks which ingredients need re-ordering
+	private static final String LEGACY_INVENTORY = "resources/data/inventory.json"; // Backup of earlier versions
 	public static final int DEFAULT_ORDER_AMOUNT = 20; // the default amount to reorder
-	private final HashMap<Ingredient, Integer> reorders; // Current re-orders; used to write to requests.txt
+	// Current re-orders; used to write to requests.txt. Changed on the event thread, read by the screens
+	private final ConcurrentHashMap<Ingredient, Integer> reorders;
 	private final File requests; // The requests file
-	private Statistics statistics;
+	private volatile Statistics statistics;
+	private volatile MakeableCache makeable; // Told whenever an ingredient's amount changes
 	private Restaurant res;
 
 	/**
 	 * Constructs an IngredientManager.
 	 *
-	 * @param ingredientsFile a json file to read ingredients from.
-	 * @param requests        a file to write re-order requests to.
+	 * @param defaults the ingredients of ingredients.json; the saved inventory, if any, keeps its stock.
+	 * @param requests a file to write re-order requests to.
 	 */
-	public IngredientManager(File ingredientsFile, File requests, Restaurant res) {
+	public IngredientManager(Supplier<List<Ingredient>> defaults, File requests, Restaurant res) {
 		ingredients = new ArrayList<>();
-		reorders = new HashMap<>();
+		registry = new IngredientRegistry();
+		reservations = new ReservationEngine();
+		reorders = new ConcurrentHashMap<>();
 		this.res = res;
 		this.requests = requests;
-		File backup = new File("resources/data/inventory.json");
-		try {
-			if (backup.createNewFile()) {
-				parseIngredients(ingredientsFile);
-			} else {
-				parseIngredients(backup);
+		JSONArray inventory = res.getPersistence().getInventory();
+		if (inventory != null) {
+			inventory.forEach(item -> register(parseIngredient(item)));
+			update(defaults.get());
+		} else if (new File(LEGACY_INVENTORY).exists()) {
+			parseIngredients(new File(LEGACY_INVENTORY));
+			replayLegacyJournal();
+			update(defaults.get());
+		} else {
+			defaults.get().forEach(this::register);
+		}
+
+		thresholdWatcher = new ThresholdWatcher(this, res);
+		ingredients.forEach(ingredient -> ingredient.setOnChange(this::ingredientChanged));
+	}
+
+	/**
+	 * Applies the "displayName|amount" records of the inventory journal of earlier versions.
+	 */
+	private void replayLegacyJournal() {
+		for (String journal : new String[]{LEGACY_INVENTORY + ".journal.old", LEGACY_INVENTORY + ".journal"}) {
+			if (!new File(journal).exists()) continue;
+
+			try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int split = line.lastIndexOf('|');
+					String name = split < 0 ? null : line.substring(0, split);
+					if (name == null || !registry.contains(name)) continue;
+					try {
+						registry.get(name).setAmount(Integer.parseInt(line.substring(split + 1)));
+					} catch (NumberFormatException ignored) {
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
+	}
 
-		backup();
+	/**
+	 * Called whenever the amount of an ingredient in stock changes.
+	 *
+	 * @param ingredient the ingredient that changed.
+	 */
+	private void ingredientChanged(Ingredient ingredient) {
+		thresholdWatcher.markChanged(ingredient);
+		res.getPersistence().ingredientChanged(ingredient);
+		if (makeable != null) makeable.ingredientChanged(ingredient);
 	}
 
 	/**
@@ -58,6 +110,15 @@ public class IngredientManager {
 	}
 
 
+	/**
+	 * Sets the cache of which menu items can be made, to keep it up to date
+	 *
+	 * @param makeable MakeableCache object
+	 */
+	public void setMakeableCache(MakeableCache makeable) {
+		this.makeable = makeable;
+	}
+
 	/**
 	 * Gets the list of ingredients.
 	 *
@@ -68,30 +129,42 @@ public class IngredientManager {
 	}
 
 	/**
-	 * Returns if an order can be ordered based on ingredient amounts present in inventory.
+	 * Gets the registry indexing the ingredients by name and id.
 	 *
-	 * @param order an order.
-	 * @return true if an order can be ordered, false otherwise.
+	 * @return the ingredient registry.
 	 */
-	private boolean canOrder(Order order) {
-		this.res.checkThresholds();
-		return order.getAllIngredients().entrySet().stream().allMatch((entry) ->
-				entry.getKey().getAmount() >= entry.getValue());
+	public IngredientRegistry getRegistry() {
+		return registry;
 	}
 
-
 	/**
-	 * Returns if an order is put into pending orders.
+	 * Returns if an order is put into pending orders. The whole order is reserved atomically, so concurrent
+	 * orders can never reserve more stock than there is.
 	 *
 	 * @param order an order
 	 * @return true if an order is reserved, i.e. put into pending queues, false otherwise
 	 */
 	public boolean reserve(Order order) {
-		if (canOrder(order)) {
-			Log.log(this.res, String.format("Ingredients reserved: %s", order.getAllIngredients()));
-			order.getAllIngredients().forEach(Ingredient::reserve);
-			statistics.updateManagerInventory();
-			backup();
+		IngredientVector needed = order.getIngredients();
+		if (reservations.reserve(needed)) {
+			Log.log(this.res, String.format("Ingredients reserved: %s", needed));
+			statistics.update(order);
+			this.res.checkThresholds();
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the ingredients reserved by an order back to the inventory, e.g. when it is cancelled before
+	 * being cooked.
+	 *
+	 * @param order an order
+	 * @return true if the reservation was released, false if the order held no reservation.
+	 */
+	public boolean release(Order order) {
+		if (reservations.release(order.getIngredients())) {
 			this.res.checkThresholds();
 			return true;
 		} else {
@@ -106,21 +179,22 @@ public class IngredientManager {
 	 * @return true if an order can be cooked, false otherwise.
 	 */
 	public boolean canCook(Order order) {
-		this.res.checkThresholds();
-		return order.getAllIngredients().entrySet().stream().allMatch((entry) ->
-				entry.getKey().getReserved() >= entry.getValue());
+		IngredientVector needed = order.getIngredients();
+		for (int i = 0; i < needed.size(); i++) {
+			if (needed.getIngredient(i).getReserved() < needed.getAmount(i)) return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Returns if an order is being cooked.
+	 * Returns if an order is being cooked. Uses up the ingredients reserved for the order.
 	 *
 	 * @param order an order
 	 * @return true if an order will be cooked, false otherwise.
 	 */
 	public boolean cook(Order order) {
-		this.res.checkThresholds();
-		if (canCook(order)) {
-			order.getAllIngredients().forEach(Ingredient::use);
+		if (reservations.consume(order.getIngredients())) {
+			this.res.checkThresholds();
 			return true;
 		} else {
 			return false;
@@ -133,51 +207,103 @@ public class IngredientManager {
 	 * @param file a json file of ingredients.
 	 */
 	private void parseIngredients(File file) {
-		try {
+		try (Reader reader = new FileReader(file)) {
 			JSONParser parser = new JSONParser();
-			Object obj = parser.parse(new FileReader(file));
-			JSONArray data = (JSONArray) obj;
+			((JSONArray) parser.parse(reader)).forEach(item -> register(parseIngredient(item)));
+		} catch (ParseException | IOException e) {
+			e.printStackTrace();
+		}
+	}
 
-			for (Object item : data) {
-				JSONObject ingredientObject = (JSONObject) item;
-				String displayName = (String) ingredientObject.get("displayName");
-				System.out.println(displayName);
+	/**
+	 * Creates an ingredient from a JSON object in the format of ingredients.json, optionally with the amount
+	 * "reserved" by pending orders.
+	 *
+	 * @param item a JSON object of an ingredient.
+	 * @return the ingredient.
+	 */
+	static Ingredient parseIngredient(Object item) {
+		JSONObject ingredientObject = (JSONObject) item;
+		String displayName = (String) ingredientObject.get("displayName");
+		double additionPrice = (double) ingredientObject.get("additionPrice");
+		int initialAmount = ((Long) ingredientObject.get("initialAmount")).intValue();
+		int threshold = ((Long) ingredientObject.get("threshold")).intValue();
+		boolean addable = (boolean) ingredientObject.get("addable");
+
+		Ingredient ingredient = new Ingredient(displayName, additionPrice, initialAmount, threshold, addable);
+		if (ingredientObject.containsKey("reserved")) {
+			ingredient.setReserved(((Long) ingredientObject.get("reserved")).intValue());
+		}
+		return ingredient;
+	}
 
-				double additionPrice = (double) ingredientObject.get("additionPrice");
-				int initialAmount = ((Long) ingredientObject.get("initialAmount")).intValue();
-				int threshold = ((Long) ingredientObject.get("threshold")).intValue();
-				boolean addable = (boolean) ingredientObject.get("addable");
+	/**
+	 * Adds an ingredient to the inventory, unless one with the same name already is.
+	 *
+	 * @param ingredient the ingredient.
+	 */
+	private void register(Ingredient ingredient) {
+		try {
+			registry.register(ingredient);
+			ingredients.add(ingredient); // Only while constructing, before the list is shared
+		} catch (InvalidIngredientException e) {
+			System.err.println(e.getMessage());
+		}
+	}
 
-				ingredients.add(new Ingredient(displayName, additionPrice, initialAmount, threshold, addable));
+	/**
+	 * Applies ingredients.json to the inventory. Ingredients already in it take their new price, threshold and
+	 * addability but keep their stock; new ones are added with their initial amount. Ingredients no longer in
+	 * the file are kept, since stock and orders may still refer to them.
+	 *
+	 * @param described the ingredients as ingredients.json describes them.
+	 * @return the ingredients that were added.
+	 */
+	synchronized List<Ingredient> update(List<Ingredient> described) {
+		ArrayList<Ingredient> added = new ArrayList<>();
+		for (Ingredient ingredient : described) {
+			if (!registry.contains(ingredient.getDisplayName())) {
+				added.add(ingredient);
+				continue;
 			}
-		} catch (ParseException | IOException e) {
-			e.printStackTrace();
+
+			Ingredient current = registry.get(ingredient.getDisplayName());
+			current.setDetails(ingredient);
+			if (thresholdWatcher != null) thresholdWatcher.markChanged(current); // Its threshold may have changed
+		}
+		if (added.isEmpty()) return added;
+
+		ArrayList<Ingredient> next = new ArrayList<>(ingredients);
+		for (Ingredient ingredient : added) {
+			registry.register(ingredient);
+			ingredient.setOnChange(this::ingredientChanged);
+			next.add(ingredient);
+			if (thresholdWatcher != null) thresholdWatcher.markChanged(ingredient);
 		}
+		if (statistics != null) statistics.setIngredients(next); // Before anything can order the new ones
+		ingredients = next;
+		return added;
 	}
 
 	/**
 	 * Gets a particular ingredient from the list.
 	 *
 	 * @param ingredient the name of the ingredient to get.
-	 * @return the specified ingredient if it exists; null otherwise.
+	 * @return the specified ingredient.
+	 * @throws InvalidIngredientException if the ingredient does not exist.
 	 */
 	public Ingredient getIngredient(String ingredient) {
-		Optional<Ingredient> t = ingredients.stream().filter(a -> a.getDisplayName().equals(ingredient)).findFirst();
+		return registry.get(ingredient);
+	}
 
-		if (t.isPresent()) {
-			return t.get();
-		} else {
-			System.err.println("Invalid type of ingredient " + ingredient + System.lineSeparator() +
-					"Valid Types are:");
-			ingredients.forEach(a -> System.err.println("\t" + a.getDisplayName()));
-			new Exception().printStackTrace();
-			System.exit(1);
-		}
 
-		return null;
+	/**
+	 * Updates the re-order requests for every ingredient whose amount changed since the last check.
+	 */
+	public void checkThresholds() {
+		thresholdWatcher.flush();
 	}
 
-
 	/**
 	 * Returns is an order is already set to be reordered.
 	 *
@@ -189,12 +315,19 @@ public class IngredientManager {
 	}
 
 	/**
-	 * Orders an ingredient
+	 * Orders an ingredient. At least DEFAULT_ORDER_AMOUNT units are ordered, or as much as was used over the
+	 * last shift if that is more.
 	 *
 	 * @param ingredient to order
+	 * @return the amount ordered.
 	 */
-	public void reorderIngredient(Ingredient ingredient) {
-		reorders.put(ingredient, DEFAULT_ORDER_AMOUNT);
+	public int reorderIngredient(Ingredient ingredient) {
+		int amount = DEFAULT_ORDER_AMOUNT;
+		if (statistics != null) {
+			amount = (int) Math.max(amount, statistics.getUsage(ingredient, Statistics.Window.SHIFT));
+		}
+		reorders.put(ingredient, amount);
+		return amount;
 	}
 
 	/**
@@ -217,21 +350,27 @@ public class IngredientManager {
 	}
 
 	/**
-	 * Updates the request.txt file to use the file with new shipment orders.
+	 * Updates the request.txt file to use the file with new shipment orders. The file is written in the
+	 * background; only the latest contents are written if it is updated again before then.
 	 */
 	public void updateRequestsFile() {
-		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(requests, false)))) {
+		StringWriter contents = new StringWriter();
+		try (PrintWriter out = new PrintWriter(contents)) {
 			for (Map.Entry<Ingredient, Integer> entry : reorders.entrySet()) {
 				out.println(entry.getKey().getDisplayName() + "|" + entry.getValue());
 			}
-			out.flush();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
+		// Replaced whole, so a crash never leaves the suppliers a truncated file
+		res.getStorageWriter().submit(requests, () -> AtomicFile.replace(requests, contents.toString()));
 	}
 
+	/**
+	 * Returns the current re-orders.
+	 *
+	 * @return a copy of the amount to re-order of each ingredient.
+	 */
 	public HashMap<Ingredient, Integer> getReorders() {
-		return this.reorders;
+		return new HashMap<>(this.reorders);
 	}
 
 	public String getReorderString() {
@@ -259,24 +398,23 @@ public class IngredientManager {
 	}
 
 	/**
-	 * Backups the Ingredient inventory
+	 * Returns the whole inventory as a JSON array, in the same format as ingredients.json plus the amount
+	 * reserved by pending orders.
+	 *
+	 * @return a JSON array of the inventory.
 	 */
-	public void backup() {
+	JSONArray toJSON() {
 		JSONArray data = new JSONArray();
 		for (Ingredient item : ingredients) {
 			JSONObject obj = new JSONObject();
 			obj.put("displayName", item.getDisplayName());
 			obj.put("initialAmount", item.getAmount());
+			obj.put("reserved", item.getReserved());
 			obj.put("additionPrice", item.getAdditionPrice());
 			obj.put("threshold", item.getThreshold());
 			obj.put("addable", item.isAddable());
 			data.add(obj);
 		}
-
-		try (FileWriter file = new FileWriter("resources/data/inventory.json", false)) {
-			file.write(data.toJSONString());
-		} catch (Exception ignored) {
-			System.out.println("fail backup ing");
-		}
+		return data;
 	}
 }
@@ -0,0 +1,104 @@
+package core;
+
+import util.InvalidIngredientException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Interns every Ingredient in the inventory to a dense integer id.
+ * <p>
+ * Ids are handed out in registration order starting at 0, so they can be used to index primitive arrays
+ * (stock, usage, ...) instead of hashing Ingredient objects. Ingredients can be registered while others are
+ * looked up, e.g. when ingredients.json is reloaded; lookups never lock.
+ */
+public class IngredientRegistry {
+	private final CopyOnWriteArrayList<Ingredient> byId; // Ingredients indexed by their id, never reordered
+	private final ConcurrentHashMap<String, Ingredient> byName; // Ingredients indexed by their display name
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public IngredientRegistry() {
+		byId = new CopyOnWriteArrayList<>();
+		byName = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Registers an ingredient and assigns it the next free id.
+	 *
+	 * @param ingredient the ingredient to register.
+	 * @return the id of the ingredient.
+	 * @throws InvalidIngredientException if an ingredient with the same name is already registered.
+	 */
+	public synchronized int register(Ingredient ingredient) {
+		if (byName.containsKey(ingredient.getDisplayName())) {
+			throw new InvalidIngredientException(ingredient.getDisplayName() + " is already registered.");
+		}
+
+		int id = byId.size();
+		ingredient.setId(id);
+		byId.add(ingredient);
+		byName.put(ingredient.getDisplayName(), ingredient);
+		return id;
+	}
+
+	/**
+	 * Gets an ingredient by its display name.
+	 *
+	 * @param name the display name of the ingredient.
+	 * @return the ingredient with that name.
+	 * @throws InvalidIngredientException if no such ingredient is registered.
+	 */
+	public Ingredient get(String name) {
+		Ingredient ingredient = byName.get(name);
+		if (ingredient == null) {
+			throw new InvalidIngredientException(name + " is not a valid ingredient.");
+		}
+		return ingredient;
+	}
+
+	/**
+	 * Gets an ingredient by its id.
+	 *
+	 * @param id the id of the ingredient.
+	 * @return the ingredient with that id.
+	 * @throws InvalidIngredientException if the id is out of range.
+	 */
+	public Ingredient get(int id) {
+		if (id < 0 || id >= byId.size()) {
+			throw new InvalidIngredientException("No ingredient with id " + id + ".");
+		}
+		return byId.get(id);
+	}
+
+	/**
+	 * Returns if an ingredient is part of this registry.
+	 *
+	 * @param ingredient an ingredient.
+	 * @return true if this exact ingredient is registered, false otherwise.
+	 */
+	public boolean contains(Ingredient ingredient) {
+		int id = ingredient.getId();
+		return id >= 0 && id < byId.size() && byId.get(id) == ingredient;
+	}
+
+	/**
+	 * Returns if an ingredient with the given name is registered.
+	 *
+	 * @param name the display name of an ingredient.
+	 * @return true if the name is registered, false otherwise.
+	 */
+	public boolean contains(String name) {
+		return byName.containsKey(name);
+	}
+
+	/**
+	 * Returns the number of registered ingredients, which is also one more than the largest id.
+	 *
+	 * @return the number of registered ingredients.
+	 */
+	public int size() {
+		return byId.size();
+	}
+}
@@ -0,0 +1,120 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An immutable list of ingredients and the amount needed of each, sorted by ingredient id.
+ * <p>
+ * Only positive amounts are kept, so ingredients that were fully removed from a dish do not appear.
+ */
+public final class IngredientVector {
+	private final Ingredient[] ingredients; // The ingredients, in ascending id order
+	private final int[] amounts; // amounts[i] is the amount needed of ingredients[i]
+
+	/**
+	 * Creates a vector from a menu item's base ingredients, plus additions, minus subtractions.
+	 *
+	 * @param base         the base ingredients.
+	 * @param additions    the ingredients to add.
+	 * @param subtractions the ingredients to remove.
+	 */
+	IngredientVector(Map<Ingredient, Integer> base, Map<Ingredient, Integer> additions,
+					 Map<Ingredient, Integer> subtractions) {
+		HashMap<Ingredient, int[]> totals = new HashMap<>();
+		base.forEach((k, v) -> totals.computeIfAbsent(k, key -> new int[1])[0] += v);
+		additions.forEach((k, v) -> totals.computeIfAbsent(k, key -> new int[1])[0] += v);
+		subtractions.forEach((k, v) -> totals.computeIfAbsent(k, key -> new int[1])[0] -= v);
+
+		this.ingredients = totals.entrySet().stream()
+				.filter(entry -> entry.getValue()[0] > 0)
+				.map(Map.Entry::getKey)
+				.sorted(Comparator.comparingInt(Ingredient::getId))
+				.toArray(Ingredient[]::new);
+		this.amounts = new int[ingredients.length];
+		for (int i = 0; i < ingredients.length; i++) {
+			amounts[i] = totals.get(ingredients[i])[0];
+		}
+	}
+
+	/**
+	 * Returns the number of distinct ingredients.
+	 *
+	 * @return the number of ingredients.
+	 */
+	public int size() {
+		return ingredients.length;
+	}
+
+	/**
+	 * Returns the i-th ingredient.
+	 *
+	 * @param i an index between 0 and size() - 1.
+	 * @return the ingredient at that index.
+	 */
+	public Ingredient getIngredient(int i) {
+		return ingredients[i];
+	}
+
+	/**
+	 * Returns the amount needed of the i-th ingredient.
+	 *
+	 * @param i an index between 0 and size() - 1.
+	 * @return the amount needed.
+	 */
+	public int getAmount(int i) {
+		return amounts[i];
+	}
+
+	/**
+	 * Calls the action with each ingredient and its amount, in ascending id order.
+	 *
+	 * @param action the action to perform.
+	 */
+	public void forEach(ObjIntConsumer<Ingredient> action) {
+		for (int i = 0; i < ingredients.length; i++) {
+			action.accept(ingredients[i], amounts[i]);
+		}
+	}
+
+	/**
+	 * Returns a new map of every ingredient to its amount.
+	 *
+	 * @return a map of ingredients to amounts.
+	 */
+	public HashMap<Ingredient, Integer> toMap() {
+		HashMap<Ingredient, Integer> result = new HashMap<>();
+		forEach(result::put);
+		return result;
+	}
+
+	/**
+	 * Returns a String representation of the vector.
+	 *
+	 * @return a String of the form {ingredient=amount, ...}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < ingredients.length; i++) {
+			if (i > 0) sb.append(", ");
+			sb.append(ingredients[i]).append('=').append(amounts[i]);
+		}
+		return sb.append('}').toString();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof IngredientVector
+				&& Arrays.equals(ingredients, ((IngredientVector) other).ingredients)
+				&& Arrays.equals(amounts, ((IngredientVector) other).amounts);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(ingredients) + Arrays.hashCode(amounts);
+	}
+}
@@ -0,0 +1,230 @@
+package core;
+
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores a Restaurant in JSON files:
+ * <ul>
+ * <li>restaurant.json, the snapshot of the state, and restaurant.json.prev, the snapshot before it;</li>
+ * <li>restaurant.json.journal, its journal, one record per line, and restaurant.json.journal.old while it is
+ * rotated; once the snapshot covering them is in place, the rotated records become
+ * restaurant.json.journal.prev, the records between the previous snapshot and the latest;</li>
+ * <li>payments/(date).jsonl, the payments of a business date, one per line, and payments/(date).rollup.json,
+ * their revenue rollup.</li>
+ * </ul>
+ * Snapshots and rollups are AtomicFiles: checksummed, replaced by renaming a file already on the disk, and read
+ * from the previous generation if the latest is damaged. When the previous snapshot is read, its journal is
+ * replayed before the rest, so recovery loses nothing and only replays the records of one extra compaction.
+ * Appended files are only forced to the disk on sync(), once per group of appends; a torn last record is skipped
+ * when read. Accounts are read from the accounts file every time.
+ */
+public class JsonFileStorage implements StorageBackend {
+	private static final String PAYMENTS = ".jsonl"; // Extension of the payments files
+	private static final String ROLLUP = ".rollup.json"; // Extension of the rollup files
+
+	private final File data; // The directory of the restaurant's data
+	private final AtomicFile snapshot; // The latest snapshot of the state, and the one before it
+	private final File journal; // Records since the latest rotation
+	private final File rotated; // Records covered by a snapshot that is still being written
+	private final File previous; // Records between the previous snapshot and the latest
+	private final File payments; // The payments and rollups of every business date
+	private final File accounts; // The accounts that can log in
+	private final LinkedHashSet<File> unsynced = new LinkedHashSet<>(); // Files appended to since the last sync
+	private boolean renamed = false; // If the journal was renamed since the last sync
+
+	/**
+	 * Creates a JsonFileStorage, and its directories if they do not exist.
+	 *
+	 * @param data     the directory of the restaurant's data, e.g. resources/data.
+	 * @param accounts the accounts file, e.g. resources/settings/accounts.json.
+	 */
+	public JsonFileStorage(File data, File accounts) {
+		this.data = data;
+		this.snapshot = new AtomicFile(new File(data, "restaurant.json"));
+		this.journal = new File(data, "restaurant.json.journal");
+		this.rotated = new File(data, "restaurant.json.journal.old");
+		this.previous = new File(data, "restaurant.json.journal.prev");
+		this.payments = new File(data, "payments");
+		this.accounts = accounts;
+
+		if (!payments.exists() && !payments.mkdirs()) {
+			System.err.println("Unable to create " + payments);
+		}
+	}
+
+	@Override
+	public String readSnapshot() throws IOException {
+		return snapshot.read();
+	}
+
+	@Override
+	public void writeSnapshot(String data) throws IOException {
+		snapshot.write(data);
+	}
+
+	@Override
+	public synchronized void appendJournal(List<String> records) throws IOException {
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(journal, true), StandardCharsets.UTF_8))) {
+			for (String record : records) {
+				out.write(record);
+				out.write('\n');
+			}
+		}
+		unsynced.add(journal);
+	}
+
+	@Override
+	public synchronized void rotateJournal() throws IOException {
+		if (!journal.exists()) return;
+
+		if (rotated.exists()) {
+			// A previous snapshot failed; keep its records until a snapshot covers them
+			Files.write(rotated.toPath(), Files.readAllBytes(journal.toPath()), StandardOpenOption.APPEND);
+			Files.delete(journal.toPath());
+		} else {
+			Files.move(journal.toPath(), rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		unsynced.add(rotated);
+		renamed = true;
+	}
+
+	@Override
+	public synchronized void dropRotatedJournal() throws IOException {
+		if (!rotated.exists()) return;
+
+		// Kept until the next compaction, in case the latest snapshot is found damaged
+		Files.move(rotated.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		renamed = true;
+	}
+
+	/**
+	 * {@inheritDoc} If the previous snapshot was read, the records between it and the latest are read first.
+	 */
+	@Override
+	public synchronized void replayJournal(Consumer<String> record) throws IOException {
+		if (snapshot.readPrevious()) readLines(previous, record);
+		readLines(rotated, record);
+		readLines(journal, record);
+	}
+
+	@Override
+	public synchronized void appendPayment(LocalDate date, String record) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(getFile(date, PAYMENTS), "rw")) {
+			long length = file.length();
+			if (length > 0) {
+				file.seek(length - 1);
+				// Terminate a torn last line from a crash mid-append, so this payment starts on its own line
+				if (file.read() != '\n') file.write('\n');
+			}
+			file.write((record + '\n').getBytes(StandardCharsets.UTF_8));
+		}
+		unsynced.add(getFile(date, PAYMENTS));
+	}
+
+	@Override
+	public synchronized void readPayments(LocalDate date, Consumer<String> record) throws IOException {
+		readLines(getFile(date, PAYMENTS), record);
+	}
+
+	@Override
+	public synchronized long getPaymentsExtent(LocalDate date) {
+		return getFile(date, PAYMENTS).length();
+	}
+
+	@Override
+	public List<LocalDate> getPaymentDates() {
+		ArrayList<LocalDate> dates = new ArrayList<>();
+		File[] files = payments.listFiles((dir, name) -> name.endsWith(PAYMENTS));
+		for (File file : files == null ? new File[0] : files) {
+			try {
+				dates.add(LocalDate.parse(file.getName().substring(0, file.getName().length() - PAYMENTS.length())));
+			} catch (DateTimeParseException ignored) {
+				// Not a payments file
+			}
+		}
+		return dates;
+	}
+
+	@Override
+	public String readRollup(LocalDate date) throws IOException {
+		return new AtomicFile(getFile(date, ROLLUP)).read();
+	}
+
+	@Override
+	public void writeRollup(LocalDate date, String rollup) throws IOException {
+		new AtomicFile(getFile(date, ROLLUP)).write(rollup);
+	}
+
+	@Override
+	public JSONArray readAccounts() throws IOException {
+		return readAccounts(accounts);
+	}
+
+	@Override
+	public synchronized void sync() throws IOException {
+		for (File file : unsynced) {
+			if (!file.exists()) continue; // Rotated away since
+
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+		}
+		unsynced.clear();
+		if (renamed) AtomicFile.forceDirectory(data);
+		renamed = false;
+	}
+
+	/**
+	 * Reads an accounts file.
+	 *
+	 * @param file the file, in the format of accounts.json.
+	 * @return the accounts.
+	 * @throws IOException if the file cannot be read or is not a JSON array.
+	 */
+	static JSONArray readAccounts(File file) throws IOException {
+		try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))) {
+			return (JSONArray) new JSONParser().parse(reader);
+		} catch (ParseException | ClassCastException e) {
+			throw new IOException("Malformed accounts file " + file, e);
+		}
+	}
+
+	/**
+	 * Returns a file of a business date.
+	 */
+	private File getFile(LocalDate date, String extension) {
+		return new File(payments, date + extension);
+	}
+
+	/**
+	 * Reads every line of a file, if it exists.
+	 */
+	private static void readLines(File file, Consumer<String> line) throws IOException {
+		if (!file.exists()) return;
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))) {
+			String next;
+			while ((next = reader.readLine()) != null) {
+				line.accept(next);
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package core;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads the files a Restaurant starts from, each on a thread of its own, and times every load.
+ * <p>
+ * Arrays such as ingredients.json and menu.json are streamed: the parser hands over one element at a time, which
+ * is turned into what the Restaurant needs right away, so the whole file is never held as one tree. Loads that
+ * do not depend on each other are started together and joined when needed, e.g. the menu is parsed while the
+ * stored state is read.
+ */
+class JsonLoader {
+	private final LinkedHashMap<String, Long> timings = new LinkedHashMap<>(); // Millis each load took, by name
+
+	/**
+	 * Starts loading a file holding a JSON object.
+	 *
+	 * @param file the file.
+	 * @return the object; completes exceptionally if the file cannot be read or is not a JSON object.
+	 */
+	CompletableFuture<JSONObject> loadObject(File file) {
+		return load(file.getName(), () -> {
+			try (Reader reader = open(file)) {
+				Object data = new JSONParser().parse(reader);
+				if (!(data instanceof JSONObject)) throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+				return (JSONObject) data;
+			}
+		});
+	}
+
+	/**
+	 * Starts loading a file holding a JSON array, streaming its elements.
+	 *
+	 * @param file    the file.
+	 * @param element turns an element into what is kept of it; elements it returns null for are skipped.
+	 * @return what was kept of each element, in order; completes exceptionally if the file cannot be read or is
+	 * not a JSON array.
+	 */
+	<T> CompletableFuture<List<T>> loadArray(File file, Function<Object, T> element) {
+		return load(file.getName(), () -> {
+			ArrayList<T> elements = new ArrayList<>();
+			try (Reader reader = open(file)) {
+				new JSONParser().parse(reader, new ArrayHandler(value -> {
+					T kept = element.apply(value);
+					if (kept != null) elements.add(kept);
+				}));
+			}
+			return elements;
+		});
+	}
+
+	/**
+	 * Starts a load of something other than a file, such as the stored state, and times it with the rest.
+	 *
+	 * @param name what is loaded.
+	 * @param load the load.
+	 * @return its result; completes exceptionally if the load throws.
+	 */
+	<T> CompletableFuture<T> load(String name, Callable<T> load) {
+		return CompletableFuture.supplyAsync(() -> {
+			long start = System.nanoTime();
+			try {
+				return load.call();
+			} catch (Exception e) {
+				throw new CompletionException(name + ": " + e.getMessage(), e);
+			} finally {
+				synchronized (timings) {
+					timings.put(name, (System.nanoTime() - start) / 1_000_000);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns how long each load took, in the order they finished.
+	 *
+	 * @return e.g. "settings.json 2 ms, menu.json 5 ms".
+	 */
+	String getTimings() {
+		StringBuilder builder = new StringBuilder();
+		synchronized (timings) {
+			timings.forEach((name, millis) -> builder.append(builder.length() == 0 ? "" : ", ")
+					.append(name).append(' ').append(millis).append(" ms"));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Opens a file for reading as UTF-8.
+	 */
+	private static Reader open(File file) throws FileNotFoundException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Builds each element of a top-level JSON array in turn and hands it over, keeping nothing once it has.
+	 */
+	private static class ArrayHandler implements ContentHandler {
+		private final Consumer<Object> element; // Called with each element
+		private final ArrayDeque<Object> containers = new ArrayDeque<>(); // Objects and arrays being built
+		private final ArrayDeque<String> keys = new ArrayDeque<>(); // Keys of the entries being built
+		private boolean started = false; // If the top-level array has started
+
+		ArrayHandler(Consumer<Object> element) {
+			this.element = element;
+		}
+
+		@Override
+		public void startJSON() {
+		}
+
+		@Override
+		public void endJSON() {
+		}
+
+		@Override
+		public boolean startObject() throws ParseException {
+			checkStarted();
+			containers.push(new JSONObject());
+			return true;
+		}
+
+		@Override
+		public boolean endObject() {
+			value(containers.pop());
+			return true;
+		}
+
+		@Override
+		public boolean startObjectEntry(String key) {
+			keys.push(key);
+			return true;
+		}
+
+		@Override
+		public boolean endObjectEntry() {
+			keys.pop();
+			return true;
+		}
+
+		@Override
+		public boolean startArray() {
+			if (!started) {
+				started = true;
+			} else {
+				containers.push(new JSONArray());
+			}
+			return true;
+		}
+
+		@Override
+		public boolean endArray() {
+			if (!containers.isEmpty()) value(containers.pop());
+			return true;
+		}
+
+		@Override
+		public boolean primitive(Object value) throws ParseException {
+			checkStarted();
+			value(value);
+			return true;
+		}
+
+		/**
+		 * Adds a finished value to the container being built, or hands it over if it is an element.
+		 */
+		@SuppressWarnings("unchecked")
+		private void value(Object value) {
+			Object container = containers.peek();
+			if (container == null) {
+				element.accept(value);
+			} else if (container instanceof JSONObject) {
+				((JSONObject) container).put(keys.peek(), value);
+			} else {
+				((JSONArray) container).add(value);
+			}
+		}
+
+		/**
+		 * Throws if the file does not start with an array.
+		 */
+		private void checkStarted() throws ParseException {
+			if (!started) throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+		}
+	}
+}
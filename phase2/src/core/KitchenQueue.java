@@ -0,0 +1,145 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The orders waiting for a cook, shared by every Cook screen.
+ * <p>
+ * Pending orders are kept in a concurrent skip list ordered by the kitchen's Policy, so adding an order is
+ * O(log n) and the next order is always at the head. Each pending order also has a marker in a hash map, and
+ * claiming an order is removing its marker: O(1), and since only one remove of the same marker can succeed, two
+ * cooks can never claim the same order. Claimed orders are dropped from the skip list lazily, when claimNext()
+ * or getPending() comes across them.
+ */
+public class KitchenQueue {
+	/**
+	 * The order in which pending orders are offered to cooks.
+	 */
+	public enum Policy {
+		FIFO(Comparator.comparingInt(Order::getOrderNumber)),
+		PRIORITY(Comparator.comparingInt(Order::getPriority).reversed()
+				.thenComparingInt(Order::getOrderNumber)),
+		DEADLINE(Comparator.comparingLong(Order::getDeadline).thenComparingInt(Order::getOrderNumber));
+
+		final Comparator<Order> comparator;
+
+		/**
+		 * Creates a Policy.
+		 *
+		 * @param comparator orders pending orders, earliest first. Must be consistent with equals.
+		 */
+		Policy(Comparator<Order> comparator) {
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Returns the Policy with the given name, or FIFO if there is no such policy.
+		 *
+		 * @param name the name of a policy, case insensitive.
+		 * @return a Policy.
+		 */
+		public static Policy fromString(String name) {
+			if (name != null) {
+				for (Policy policy : values()) {
+					if (policy.name().equalsIgnoreCase(name)) return policy;
+				}
+				System.err.println("Invalid kitchen policy " + name + ", using FIFO");
+			}
+			return FIFO;
+		}
+	}
+
+	private final Policy policy; // How pending orders are ordered
+	private final ConcurrentSkipListSet<Order> pending; // Orders not yet claimed by a cook, and some claimed ones
+	private final ConcurrentHashMap<Order, Boolean> unclaimed = new ConcurrentHashMap<>(); // Marks pending orders
+
+	/**
+	 * Creates an empty KitchenQueue.
+	 *
+	 * @param policy the order in which pending orders are offered to cooks.
+	 */
+	public KitchenQueue(Policy policy) {
+		this.policy = policy;
+		this.pending = new ConcurrentSkipListSet<>(policy.comparator);
+	}
+
+	/**
+	 * Returns the policy of this queue.
+	 *
+	 * @return a Policy.
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Adds an order to the queue. The order's priority and deadline must not change while it is queued.
+	 *
+	 * @param order the order to add.
+	 */
+	public void add(Order order) {
+		unclaimed.put(order, Boolean.TRUE);
+		pending.add(order);
+	}
+
+	/**
+	 * Claims a specific order. Only one caller can claim a given order.
+	 *
+	 * @param order the order to claim.
+	 * @return true if the order was claimed, false if it was already claimed or removed.
+	 */
+	public boolean claim(Order order) {
+		return unclaimed.remove(order) != null;
+	}
+
+	/**
+	 * Claims the next order according to the policy.
+	 *
+	 * @return the claimed order, or null if no order is pending.
+	 */
+	public Order claimNext() {
+		Order order;
+		while ((order = pending.pollFirst()) != null) {
+			if (claim(order)) return order;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes an order from the queue, e.g. when it is cancelled before a cook takes it.
+	 *
+	 * @param order the order to remove.
+	 * @return true if the order was pending.
+	 */
+	public boolean remove(Order order) {
+		return claim(order);
+	}
+
+	/**
+	 * Returns the pending orders in policy order.
+	 *
+	 * @return a new list of the pending orders.
+	 */
+	public ArrayList<Order> getPending() {
+		ArrayList<Order> orders = new ArrayList<>();
+		for (Iterator<Order> it = pending.iterator(); it.hasNext(); ) {
+			Order order = it.next();
+			if (unclaimed.containsKey(order)) orders.add(order);
+			else it.remove(); // Claimed since it was added
+		}
+		return orders;
+	}
+
+	/**
+	 * Returns the number of pending orders.
+	 *
+	 * @return the number of pending orders.
+	 */
+	public int size() {
+		return unclaimed.size();
+	}
+}
@@ -0,0 +1,83 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of latencies in milliseconds, in the style of an HDR histogram.
+ * <p>
+ * Values below SUB_BUCKETS get a bucket each; above that, every power of two is split into SUB_BUCKETS linear
+ * buckets, so any value is kept to within 1/SUB_BUCKETS of its true value, and the whole range of a long fits
+ * in under a thousand counters. Recording is a single atomic increment, and percentiles are read by walking
+ * the buckets.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Linear buckets per power of two
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Records a latency. Negative values are recorded as 0.
+	 *
+	 * @param millis the latency in milliseconds.
+	 */
+	public void record(long millis) {
+		counts.incrementAndGet(indexOf(Math.max(0, millis)));
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 *
+	 * @return the number of latencies recorded.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the latency at or below which a given percentage of the recorded latencies fall.
+	 *
+	 * @param percentile a percentage between 0 and 100.
+	 * @return the latency in milliseconds, or 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) return highestValueIn(i);
+		}
+		return highestValueIn(BUCKETS - 1);
+	}
+
+	/**
+	 * Returns the bucket a value falls in.
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the highest value that falls in a bucket.
+	 */
+	private static long highestValueIn(int index) {
+		if (index < SUB_BUCKETS) return index;
+
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowest + width - 1;
+	}
+}
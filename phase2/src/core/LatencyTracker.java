@@ -0,0 +1,197 @@
+package core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long orders spend in each stage of the kitchen, overall, per MenuItem and per cook.
+ * <p>
+ * Orders time-stamp their own state changes on the monotonic clock; when an order reaches the end of a Stage
+ * the time since the start of that Stage is recorded in a LatencyHistogram, so recording never allocates
+ * after the first order of an item or cook and the percentiles can be read at any time.
+ */
+public class LatencyTracker {
+	/**
+	 * A stretch of an order's life, between two states.
+	 */
+	public enum Stage {
+		QUEUED(Order.ORDER_ORDERED, Order.ORDER_RECEIVED), // Waiting for a cook
+		COOKING(Order.ORDER_RECEIVED, Order.ORDER_COOKED), // Being cooked
+		PASS(Order.ORDER_COOKED, Order.ORDER_DELIVERED), // Waiting for the server
+		TOTAL(Order.ORDER_ORDERED, Order.ORDER_DELIVERED); // From ordered to delivered
+
+		final int from, to;
+
+		/**
+		 * Creates a Stage.
+		 *
+		 * @param from the state the stage starts at.
+		 * @param to   the state the stage ends at.
+		 */
+		Stage(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * The percentiles shown in reports.
+	 */
+	private static final double[] PERCENTILES = {50, 95, 99};
+
+	private final EnumMap<Stage, LatencyHistogram> overall; // Every order, by stage
+	private final ConcurrentHashMap<String, EnumMap<Stage, LatencyHistogram>> byItem; // By MenuItem name
+	private final ConcurrentHashMap<String, EnumMap<Stage, LatencyHistogram>> byCook; // By cook user name
+
+	/**
+	 * Creates an empty LatencyTracker.
+	 */
+	public LatencyTracker() {
+		overall = newHistograms();
+		byItem = new ConcurrentHashMap<>();
+		byCook = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Creates a histogram for every stage.
+	 */
+	private static EnumMap<Stage, LatencyHistogram> newHistograms() {
+		EnumMap<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+		for (Stage stage : Stage.values()) {
+			histograms.put(stage, new LatencyHistogram());
+		}
+		return histograms;
+	}
+
+	/**
+	 * Records every stage an order just completed by reaching its current state.
+	 *
+	 * @param order an order whose state just changed.
+	 */
+	public void progressChanged(Order order) {
+		int state = order.getProgress();
+		for (Stage stage : Stage.values()) {
+			if (stage.to != state || !order.hasReached(stage.from)) continue;
+
+			long millis = TimeUnit.NANOSECONDS.toMillis(order.getReachedAt(stage.to) - order.getReachedAt(stage.from));
+			overall.get(stage).record(millis);
+			byItem.computeIfAbsent(order.getItem().getName(), key -> newHistograms()).get(stage).record(millis);
+			if (order.getCook() != null) {
+				byCook.computeIfAbsent(order.getCook().getUser(), key -> newHistograms()).get(stage).record(millis);
+			}
+		}
+	}
+
+	/**
+	 * Returns the histogram of a stage over every order.
+	 *
+	 * @param stage the stage.
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getHistogram(Stage stage) {
+		return overall.get(stage);
+	}
+
+	/**
+	 * Returns the histogram of a stage over the orders of a MenuItem.
+	 *
+	 * @param item  the MenuItem.
+	 * @param stage the stage.
+	 * @return the histogram, or null if the item was never ordered.
+	 */
+	public LatencyHistogram getHistogram(MenuItem item, Stage stage) {
+		EnumMap<Stage, LatencyHistogram> histograms = byItem.get(item.getName());
+		return histograms == null ? null : histograms.get(stage);
+	}
+
+	/**
+	 * Returns the histogram of a stage over the orders of a cook.
+	 *
+	 * @param cook  the user name of the cook.
+	 * @param stage the stage.
+	 * @return the histogram, or null if the cook never completed a stage.
+	 */
+	public LatencyHistogram getHistogram(String cook, Stage stage) {
+		EnumMap<Stage, LatencyHistogram> histograms = byCook.get(cook);
+		return histograms == null ? null : histograms.get(stage);
+	}
+
+	/**
+	 * Returns a readable report of the p50, p95 and p99 of every stage, overall, per MenuItem and per cook.
+	 *
+	 * @return the report.
+	 */
+	public String getReport() {
+		StringBuilder builder = new StringBuilder("===== Order Latency (p50 / p95 / p99) =====");
+		appendReport(builder, "All orders", overall);
+		new TreeMap<>(byItem).forEach((item, histograms) -> appendReport(builder, "Item " + item, histograms));
+		new TreeMap<>(byCook).forEach((cook, histograms) -> appendReport(builder, "Cook " + cook, histograms));
+		return builder.toString();
+	}
+
+	/**
+	 * Appends a group of histograms to a report.
+	 */
+	private static void appendReport(StringBuilder builder, String title, Map<Stage, LatencyHistogram> histograms) {
+		builder.append(String.format("%s%s", System.lineSeparator(), title));
+		histograms.forEach((stage, histogram) -> {
+			if (histogram.getCount() == 0) return;
+			builder.append(String.format("%s  %-8s %s (%d orders)", System.lineSeparator(), stage,
+					formatPercentiles(histogram), histogram.getCount()));
+		});
+	}
+
+	/**
+	 * Formats the report percentiles of a histogram, e.g. "1m 2s / 5m 0s / 9m 30s".
+	 */
+	private static String formatPercentiles(LatencyHistogram histogram) {
+		StringBuilder builder = new StringBuilder();
+		for (double percentile : PERCENTILES) {
+			if (builder.length() > 0) builder.append(" / ");
+			long seconds = TimeUnit.MILLISECONDS.toSeconds(histogram.getPercentile(percentile));
+			builder.append(String.format("%dm %ds", seconds / 60, seconds % 60));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Exports the p50, p95 and p99 of every histogram as CSV, one line per group and stage, in milliseconds.
+	 *
+	 * @param file the file to write to.
+	 */
+	public void export(File file) {
+		try (FileWriter out = new FileWriter(file)) {
+			out.write("group,stage,count,p50,p95,p99" + System.lineSeparator());
+			exportGroup(out, "all", overall);
+			for (Map.Entry<String, EnumMap<Stage, LatencyHistogram>> entry : new TreeMap<>(byItem).entrySet()) {
+				exportGroup(out, "item:" + entry.getKey(), entry.getValue());
+			}
+			for (Map.Entry<String, EnumMap<Stage, LatencyHistogram>> entry : new TreeMap<>(byCook).entrySet()) {
+				exportGroup(out, "cook:" + entry.getKey(), entry.getValue());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the CSV lines of a group of histograms.
+	 */
+	private static void exportGroup(FileWriter out, String group, Map<Stage, LatencyHistogram> histograms)
+			throws IOException {
+		for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			out.write(String.format("\"%s\",%s,%d", group.replace("\"", "\"\""), entry.getKey(), histogram.getCount()));
+			for (double percentile : PERCENTILES) {
+				out.write("," + histogram.getPercentile(percentile));
+			}
+			out.write(System.lineSeparator());
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Knows how many portions of each menu item can currently be made from the stock that is not reserved.
+ * <p>
+ * A reverse index maps each ingredient to the menu items whose recipes use it. When the amount of an ingredient
+ * changes, only the items that use it are marked stale, and only stale items are recomputed, on the next query;
+ * the whole menu is only computed once, when the cache is created. Portions count the base recipe of an item;
+ * additions to an order are checked when it is reserved. Each version of the menu has a cache of its own.
+ */
+public class MakeableCache {
+	private final Menu menu; // The items, by id
+	private final int[][] uses; // Ids of the items that use each ingredient, by ingredient id
+	private final int[] portions; // Portions of each item that can be made, by item id, unless stale
+	private final BitSet makeable = new BitSet(); // Ids of the items with at least one portion
+	private final BitSet stale = new BitSet(); // Ids of the items whose portions must be recomputed
+
+	/**
+	 * Creates a MakeableCache and computes the portions of every item.
+	 *
+	 * @param menu        the menu.
+	 * @param ingredients the number of registered ingredients.
+	 */
+	MakeableCache(Menu menu, int ingredients) {
+		this.menu = menu;
+		this.portions = new int[menu.getIdCapacity()];
+
+		int[] counts = new int[ingredients];
+		for (MenuItem item : menu) {
+			item.getAllIngredients().keySet().forEach(ingredient -> counts[ingredient.getId()]++);
+		}
+		uses = new int[ingredients][];
+		for (int i = 0; i < ingredients; i++) {
+			uses[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (MenuItem item : menu) {
+			for (Ingredient ingredient : item.getAllIngredients().keySet()) {
+				int id = ingredient.getId();
+				uses[id][counts[id]++] = item.getId();
+			}
+		}
+
+		menu.forEach(item -> stale.set(item.getId()));
+	}
+
+	/**
+	 * Marks the items using an ingredient as stale. Called whenever its amount changes, possibly while its
+	 * monitor is held, so it only marks.
+	 *
+	 * @param ingredient the ingredient whose amount changed.
+	 */
+	synchronized void ingredientChanged(Ingredient ingredient) {
+		int id = ingredient.getId();
+		if (id < 0 || id >= uses.length) return;
+		for (int item : uses[id]) {
+			stale.set(item);
+		}
+	}
+
+	/**
+	 * Returns how many portions of an item can be made right now.
+	 *
+	 * @param item an item on the menu, or its version on an earlier menu.
+	 * @return the portions of the item on the menu, 0 if it cannot be made or is no longer on the menu.
+	 */
+	public synchronized int getPortions(MenuItem item) {
+		int id = item.getId();
+		if (menu.getById(id) == null) return 0;
+		refresh();
+		return portions[id];
+	}
+
+	/**
+	 * Returns whether at least one portion of an item can be made right now.
+	 *
+	 * @param item an item on the menu.
+	 * @return true if it can be made.
+	 */
+	public boolean isMakeable(MenuItem item) {
+		return getPortions(item) > 0;
+	}
+
+	/**
+	 * Returns the items of which at least one portion can be made right now.
+	 *
+	 * @return a new list of the items, in the order they were first added to the menu.
+	 */
+	public synchronized ArrayList<MenuItem> getMakeable() {
+		refresh();
+		ArrayList<MenuItem> items = new ArrayList<>(makeable.cardinality());
+		for (int id = makeable.nextSetBit(0); id >= 0; id = makeable.nextSetBit(id + 1)) {
+			items.add(menu.getById(id));
+		}
+		return items;
+	}
+
+	/**
+	 * Recomputes the portions of every stale item.
+	 */
+	private void refresh() {
+		for (int id = stale.nextSetBit(0); id >= 0; id = stale.nextSetBit(id + 1)) {
+			int count = Integer.MAX_VALUE;
+			for (Map.Entry<Ingredient, Integer> entry : menu.getById(id).getAllIngredients().entrySet()) {
+				if (entry.getValue() <= 0) continue;
+				count = Math.min(count, Math.max(0, entry.getKey().getAmount()) / entry.getValue());
+			}
+			portions[id] = count;
+			makeable.set(id, count > 0);
+		}
+		stale.clear();
+	}
+}
@@ -0,0 +1,109 @@
+package core;
+
+import org.json.simple.JSONArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores a Restaurant in memory only, so nothing is kept across runs and nothing waits on a disk. Meant for
+ * benchmarks and tests.
+ */
+public class MemoryStorage implements StorageBackend {
+	private String snapshot; // The latest snapshot of the state
+	private final ArrayList<String> journal = new ArrayList<>(); // Records since the latest rotation
+	private final ArrayList<String> rotated = new ArrayList<>(); // Records covered by a snapshot being written
+	private final HashMap<LocalDate, ArrayList<String>> payments = new HashMap<>(); // By business date
+	private final HashMap<LocalDate, String> rollups = new HashMap<>(); // By business date
+	private final JSONArray accounts; // The accounts that can log in
+
+	/**
+	 * Creates an empty MemoryStorage.
+	 *
+	 * @param accounts the accounts file to read the accounts from once, e.g. resources/settings/accounts.json;
+	 *                 null for no accounts.
+	 */
+	public MemoryStorage(File accounts) {
+		JSONArray data = new JSONArray();
+		if (accounts != null) {
+			try {
+				data = JsonFileStorage.readAccounts(accounts);
+			} catch (IOException e) {
+				System.err.println("Unable to read accounts: " + e.getMessage());
+			}
+		}
+		this.accounts = data;
+	}
+
+	@Override
+	public synchronized String readSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public synchronized void writeSnapshot(String snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	@Override
+	public synchronized void appendJournal(List<String> records) {
+		journal.addAll(records);
+	}
+
+	@Override
+	public synchronized void rotateJournal() {
+		rotated.addAll(journal);
+		journal.clear();
+	}
+
+	@Override
+	public synchronized void dropRotatedJournal() {
+		rotated.clear();
+	}
+
+	@Override
+	public synchronized void replayJournal(Consumer<String> record) {
+		rotated.forEach(record);
+		journal.forEach(record);
+	}
+
+	@Override
+	public synchronized void appendPayment(LocalDate date, String record) {
+		payments.computeIfAbsent(date, key -> new ArrayList<>()).add(record);
+	}
+
+	@Override
+	public synchronized void readPayments(LocalDate date, Consumer<String> record) {
+		payments.getOrDefault(date, new ArrayList<>()).forEach(record);
+	}
+
+	@Override
+	public synchronized long getPaymentsExtent(LocalDate date) {
+		return payments.containsKey(date) ? payments.get(date).size() : 0;
+	}
+
+	@Override
+	public synchronized List<LocalDate> getPaymentDates() {
+		return new ArrayList<>(payments.keySet());
+	}
+
+	@Override
+	public synchronized String readRollup(LocalDate date) {
+		return rollups.get(date);
+	}
+
+	@Override
+	public synchronized void writeRollup(LocalDate date, String rollup) {
+		rollups.put(date, rollup);
+	}
+
+	@Override
+	public JSONArray readAccounts() {
+		return accounts;
+	}
+}
@@ -2,121 +2,178 @@ package core;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import util.InvalidIngredientException;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
- * A Menu of dishes. Can return a Menu with items of specific categories.
+ * A Menu of dishes. Can return the items with or without specific tags.
  * <p>
- * Currently not used too extensively because of menu.json, but kept for possible expansion in phase 2.
+ * Items are indexed by name, and each tag has a bitset of the ids of the items that have it, so looking up an
+ * item is a hash lookup and filtering by tags is a few bitset intersections, however large the menu. Items are
+ * only added through add(MenuItem), which indexes them; the menu is not changed after it is built.
+ * <p>
+ * When menu.json changes, a new Menu is built from the previous one and replaces it (see Restaurant). A dish
+ * keeps its id in every version of the menu, even if it is dropped and later added back, so ids stay valid
+ * for statistics and for orders made from an earlier version; new dishes get ids no version has used.
  */
-//TODO: Implement Tag System
 public class Menu extends ArrayList<MenuItem> {
 	private Restaurant restaurant;// The Restaurant the menu belongs to
+	private final HashMap<String, MenuItem> byName = new HashMap<>(); // Every item, by name
+	private final ArrayList<MenuItem> byId = new ArrayList<>(); // Every item, by id; null for ids not on the menu
+	private final BitSet ids = new BitSet(); // The ids of every item
+	private final TreeMap<String, BitSet> byTag = new TreeMap<>(); // The ids of the items with each tag
+	private final HashMap<String, Integer> idsByName; // The id of every dish of this or an earlier version
 
 	/**
-	 * Creates a menu from a file.
+	 * Creates a menu from the dishes of menu.json.
 	 *
-	 * @param file the Json the Menu is built from.
+	 * @param data the dishes the Menu is built from, as JSON objects. Refer to resources/menu.json for format.
 	 * @param res  a Restaurant with this Menu.
 	 */
-	public Menu(File file, Restaurant res) {
+	public Menu(List<JSONObject> data, Restaurant res) {
+		this(data, res, null);
+	}
+
+	/**
+	 * Creates a new version of a menu from the dishes of menu.json.
+	 *
+	 * @param data     the dishes the Menu is built from, as JSON objects.
+	 * @param res      a Restaurant with this Menu.
+	 * @param previous the previous version, whose dishes keep their ids; null for the first version.
+	 */
+	public Menu(List<JSONObject> data, Restaurant res, Menu previous) {
 		super();
 		this.restaurant = res;
-		parseMenu(file);
+		this.idsByName = previous == null ? new HashMap<>() : new HashMap<>(previous.idsByName);
+		parseMenu(data);
 	}
 
 	/**
-	 * Parses a menu from a json file to add ingredients to a the menu.
+	 * Adds the dishes of menu.json to the menu, skipping dishes that use ingredients not in the inventory.
 	 *
-	 * @param file a json file containing menu items. Refer to resources/menu.json for format.
+	 * @param data the dishes, as JSON objects.
 	 */
-	private void parseMenu(File file) {
-		try {
-			JSONParser parser = new JSONParser();
-			Object obj = parser.parse(new FileReader(file));
-			JSONArray data = (JSONArray) obj;
+	private void parseMenu(List<JSONObject> data) {
+		for (JSONObject dish : data) {
+			String name = (String) dish.get("name");
+			double price = (double) dish.get("price");
 
-			for (Object item : data) {
-				JSONObject dish = (JSONObject) item;
-				String name = (String) dish.get("name");
-				double price = (double) dish.get("price");
+			Object[] tags = ((JSONArray) dish.get("tags")).toArray();
+			ArrayList<String> tagsList = new ArrayList<>(Arrays.stream(tags).map(object ->
+					Objects.toString(object, null)).collect(Collectors.toList()));
 
-				Object[] tags = ((JSONArray) dish.get("tags")).toArray();
-				ArrayList<String> tagsList = new ArrayList<>(Arrays.stream(tags).map(object ->
-						Objects.toString(object, null)).collect(Collectors.toList()));
+			JSONObject ingredients = ((JSONObject) dish.get("ingredients"));
 
-				JSONObject ingredients = ((JSONObject) dish.get("ingredients"));
-
-				ingredients.keySet().forEach(a -> {
-					String key = (String) a; //TODO: ??
-				});
-
-				HashMap<Ingredient, Integer> ingredientsMap = new HashMap<>();
+			HashMap<Ingredient, Integer> ingredientsMap = new HashMap<>();
 
+			try {
 				ingredients.keySet().stream().forEach(key -> {
 					String ingredient = (String) key;
 					int amount = ((Long) ingredients.get(key)).intValue();
 					Ingredient ing = restaurant.getIngredientManager().getIngredient(ingredient);
 					ingredientsMap.put(ing, amount);
 				});
-
-				add(new MenuItem(name, price, ingredientsMap, tagsList));
+			} catch (InvalidIngredientException e) {
+				System.err.println("Skipping menu item " + name + ": " + e.getMessage());
+				continue;
 			}
-		} catch (ParseException | IOException e) {
-			e.printStackTrace();
+
+			add(new MenuItem(name, price, ingredientsMap, tagsList));
 		}
 	}
 
+	/**
+	 * Adds an item to the end of the menu and indexes it by name and tags. It gets the id its name had in an
+	 * earlier version of the menu, or the next unused id.
+	 *
+	 * @param item the item, whose name is not on the menu yet.
+	 * @return true if the item was added, false if an item with the same name already is.
+	 */
+	@Override
+	public boolean add(MenuItem item) {
+		if (byName.containsKey(item.getName())) {
+			System.err.println("Skipping menu item " + item.getName() + ": already on the menu");
+			return false;
+		}
+
+		int id = idsByName.computeIfAbsent(item.getName(), name -> idsByName.size());
+		item.setId(id);
+		super.add(item);
+		byName.put(item.getName(), item);
+		while (byId.size() <= id) byId.add(null);
+		byId.set(id, item);
+		ids.set(id);
+		for (String tag : item.getTags()) {
+			byTag.computeIfAbsent(tag, key -> new BitSet()).set(id);
+		}
+		return true;
+	}
+
 	/**
 	 * Gets an item from a menu.
 	 *
 	 * @param item the name of the menu item
-	 * @return a menu item if it exists, or a string otherwise.
+	 * @return the menu item, or null if there is none with that name.
 	 */
 	public MenuItem get(String item) {
-		Optional<MenuItem> menuItem = stream().filter(a -> a.getName().equals(item)).findFirst();
-		if (!menuItem.isPresent()) {
-			System.err.println("No such item " + item);
-			System.err.println("Please select from the following items:");
-			forEach(a -> System.err.println(a.getName()));
-			return null;
-		}
-		return menuItem.get();
+		return byName.get(item);
 	}
 
-//	 Under construction; for future updateUsage
-//    /**
-//     * Returns a menu with specific tags.
-//     *
-//     * @param included the list of tags to be included in the menu
-//     * @param excluded the list of tags to be excluded from the menu
-//     * @return a menu with menu items with included tags and without items with excluded tags
-//     */
-//    public Menu getMenuWithTags(ArrayList<String> included, ArrayList<String> excluded) {
-//        ArrayList<MenuItem> menu = new ArrayList<>();
-//        for (MenuItem item : this) {
-//            ArrayList<String> tags = item.getTags();
-//            boolean skip = false;
-//            for (String tag : tags) {
-//                if (!included.contains(tag) || excluded.contains(tag)) {
-//                    skip = true;
-//                }
-//            }
-//            if (skip) continue;
-//
-//
-//            menu.add(item);
-//        }
-//
-//        return new Menu(menu);
-//    }
+	/**
+	 * Gets an item by its id.
+	 *
+	 * @param id the id of the item.
+	 * @return the item, or null if no item on this menu has that id.
+	 */
+	public MenuItem getById(int id) {
+		return id >= 0 && id < byId.size() ? byId.get(id) : null;
+	}
+
+	/**
+	 * Returns one more than the largest id any version of the menu has used, to size arrays indexed by id.
+	 *
+	 * @return the number of ids.
+	 */
+	public int getIdCapacity() {
+		return idsByName.size();
+	}
+
+	/**
+	 * Returns every tag of the items on the menu.
+	 *
+	 * @return the tags, in alphabetical order.
+	 */
+	public Set<String> getTags() {
+		return Collections.unmodifiableSet(byTag.keySet());
+	}
+
+	/**
+	 * Returns the items with all of some tags and none of others.
+	 *
+	 * @param included the tags the items must have; every item if empty.
+	 * @param excluded the tags the items must not have.
+	 * @return a new list of the items, in the order they were first added to the menu.
+	 */
+	public ArrayList<MenuItem> getItemsWithTags(Collection<String> included, Collection<String> excluded) {
+		BitSet found = (BitSet) ids.clone();
+		for (String tag : included) {
+			BitSet tagged = byTag.get(tag);
+			if (tagged == null) return new ArrayList<>();
+			found.and(tagged);
+		}
+		for (String tag : excluded) {
+			BitSet tagged = byTag.get(tag);
+			if (tagged != null) found.andNot(tagged);
+		}
+
+		ArrayList<MenuItem> items = new ArrayList<>(found.cardinality());
+		for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+			items.add(byId.get(id));
+		}
+		return items;
+	}
 
 	/**
 	 * Sets the Restaurant of the menu.
@@ -9,9 +9,10 @@ import java.util.HashMap;
 public class MenuItem implements Comparable<MenuItem> {
 	private String name; // Serves as both reference (system) and display name
 	private HashMap<Ingredient, Integer> baseIngredients;// the base ingredients for a menu item
-	private ArrayList<String> tags; // the tags of a menu item TODO:For future usage
+	private ArrayList<String> tags; // the tags of a menu item, indexed by the Menu
 	private double basePrice;// the base price
-	private int usage; // The number of times the item was ordered (for stats)
+	private int usage; // The number of times the item was ordered, as last sampled by Statistics
+	private int id = -1; // Dense id assigned by the Menu
 
 	/**
 	 * Constructs a MenuItem without tags.
@@ -72,7 +73,7 @@ public class MenuItem implements Comparable<MenuItem> {
 	}
 
 	/**
-	 * Returns tags describing the dish. For future usage.
+	 * Returns tags describing the dish.
 	 *
 	 * @return tags describing the dish.
 	 */
@@ -81,14 +82,25 @@ public class MenuItem implements Comparable<MenuItem> {
 	}
 
 	/**
-	 * Increases the usage of the MenuItem by 1.
+	 * Returns the id of the MenuItem, its position in the Menu it was parsed from.
+	 *
+	 * @return the id, or -1 if the item is not part of a Menu.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the MenuItem. Only the Menu assigns ids.
+	 *
+	 * @param id the id.
 	 */
-	public synchronized void use() {
-		usage++;
+	void setId(int id) {
+		this.id = id;
 	}
 
 	/**
-	 * Returns the usage of the MenuItem.
+	 * Returns the usage of the MenuItem, as of the last time Statistics was sampled.
 	 *
 	 * @return a int representing the usage of the MenuItem.
 	 */
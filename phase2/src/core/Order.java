@@ -4,6 +4,8 @@ import visual.gui.Cook;
 import visual.gui.Server;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Represents an order, containing one item.
@@ -11,16 +13,25 @@ import java.util.HashMap;
 public class Order implements Comparable{
 	private MenuItem item; // The order's item
 	private HashMap<Ingredient, Integer> additions;// A list of added ingredients
+	private HashMap<Ingredient, Double> additionPrices; // Prices of the additions when they were made
+	private volatile long price; // The price of the order in cents, computed when its additions are set
 	private HashMap<Ingredient, Integer> subtractions; // A list of subtracted ingredients
+	private volatile IngredientVector ingredients; // Cached result of getIngredients()
 
 	private Table table; // Table that the order belongs to
 	private int seatNumber; // Seat number at that table
 	private Cook cook; // Assigned cook
-	private final Server server; // Assigned server
+	private Server server; // Assigned server, null for restored orders until the server logs in
+	private final String serverName; // User name of the assigned server
 
 	private int state; // See below for possible states
 	private static int orderNumberCounter = 10000; // the order number tracker
 	private int orderNumber; // the order number
+	private int priority = 0; // Higher priorities are cooked first under the PRIORITY kitchen policy
+	private long deadline; // Time in millis the order should be cooked by, used by the DEADLINE kitchen policy
+	private ObjIntConsumer<Order> onProgress; // Notified with the previous state whenever the state changes
+	private final long[] reachedAt = new long[ORDER_CANCELLED + 1]; // System.nanoTime() each state was reached
+	private int reached; // Bit set of the states reached
 
 
 	// Represents different states of an order (to avoid hardcoding).
@@ -30,6 +41,9 @@ public class Order implements Comparable{
 	public static final int ORDER_DELIVERED = 4;
 	public static final int ORDER_CANCELLED = 5;
 
+	// The default time a kitchen has to cook an order, in milliseconds.
+	public static final long DEFAULT_COOK_TIME = 15 * 60 * 1000;
+
 	/**
 	 * Creates an order with specific information.
 	 *
@@ -46,15 +60,55 @@ public class Order implements Comparable{
 				 Table table,
 				 int seatNumber,
 				 Server server) {
+		this(item, additions, subtractions, table, seatNumber, server, server.getUser(), nextOrderNumber());
+	}
+
+	/**
+	 * Recreates an order from persisted state. It has not reached any state yet as far as getReachedAt is
+	 * concerned: the times of earlier runs are not kept, so no stage that started before the restart is measured.
+	 *
+	 * @param item         the menu item being ordered.
+	 * @param additions    a list of additional ingredients to be added to the item.
+	 * @param subtractions a list of ingredients that should be removed from the item.
+	 * @param table        the table that the order corresponds to.
+	 * @param seatNumber   the seat number a Order corresponds to.
+	 * @param serverName   the user name of the server who took the Order.
+	 * @param orderNumber  the order number the Order was given when it was first taken.
+	 */
+	Order(MenuItem item,
+		  HashMap<Ingredient, Integer> additions,
+		  HashMap<Ingredient, Integer> subtractions,
+		  Table table,
+		  int seatNumber,
+		  String serverName,
+		  int orderNumber) {
+		this(item, additions, subtractions, table, seatNumber, null, serverName, orderNumber);
+		advanceOrderNumber(orderNumber);
+		reached = 0;
+	}
+
+	private Order(MenuItem item,
+				  HashMap<Ingredient, Integer> additions,
+				  HashMap<Ingredient, Integer> subtractions,
+				  Table table,
+				  int seatNumber,
+				  Server server,
+				  String serverName,
+				  int orderNumber) {
 		this.item = item;
 		this.additions = additions;
+		this.additionPrices = getPrices(additions);
+		this.price = computePrice();
 		this.subtractions = subtractions;
 		this.table = table;
 		this.seatNumber = seatNumber;
-		this.orderNumber = orderNumberCounter++;
+		this.orderNumber = orderNumber;
 		this.server = server;
+		this.serverName = serverName;
+		this.deadline = System.currentTimeMillis() + DEFAULT_COOK_TIME;
 		table.setServer(server);
 		state = ORDER_ORDERED;
+		markReached(ORDER_ORDERED);
 	}
 
 	/**
@@ -63,29 +117,103 @@ public class Order implements Comparable{
 	 * @return the price of the order.
 	 */
 	public double getPrice() {
+		return price / 100d;
+	}
+
+	/**
+	 * Gets the price of the order in whole cents, as bills add it up.
+	 *
+	 * @return the price of the order, in cents.
+	 */
+	public long getPriceInCents() {
+		return price;
+	}
 
-        return item.getBasePrice() +
-                this.additions.entrySet().stream().mapToDouble((entry) ->
-                        entry.getKey().getAdditionPrice() * entry.getValue()
-                ).sum();
+	/**
+	 * Adds up the price of the item and of each addition in whole cents, so that sums of prices do not drift.
+	 */
+	private long computePrice() {
+		long cents = Math.round(item.getBasePrice() * 100);
+		for (Map.Entry<Ingredient, Integer> entry : additions.entrySet()) {
+			cents += Math.round(additionPrices.get(entry.getKey()) * 100) * entry.getValue();
+		}
+		return cents;
+	}
+
+	/**
+	 * Returns the current price of each addition, so the order keeps them if ingredients.json is reloaded.
+	 */
+	private static HashMap<Ingredient, Double> getPrices(HashMap<Ingredient, Integer> additions) {
+		HashMap<Ingredient, Double> prices = new HashMap<>();
+		additions.keySet().forEach(ingredient -> prices.put(ingredient, ingredient.getAdditionPrice()));
+		return prices;
+	}
+
+	/**
+	 * Gets all the ingredients used in the order. The vector is computed once and cached until the additions
+	 * or subtractions change.
+	 *
+	 * @return the ingredients used in the order.
+	 */
+	public IngredientVector getIngredients() {
+		IngredientVector result = ingredients;
+		if (result == null) {
+			result = new IngredientVector(item.getAllIngredients(), additions, subtractions);
+			ingredients = result;
+		}
+		return result;
 	}
 
 	/**
 	 * Gets a list of all the ingredients used in the order.
 	 *
-	 * @return a list of all the ingredients used in the order.
+	 * @return a new map of all the ingredients used in the order.
 	 */
 	public HashMap<Ingredient, Integer> getAllIngredients() {
-		HashMap<Ingredient, Integer> result = new HashMap<>();
+		return getIngredients().toMap();
+	}
 
-		// add amounts from all ingredients to results map
-		item.getAllIngredients().forEach(result::put);
-		// add amounts from additions to results map
-		additions.forEach((k1, v1) -> result.compute(k1, (k, v) -> (v != null ? v : 0) + additions.get(k)));
-		// subtract amounts from subtractions from results map
-		subtractions.forEach((k1, v1) -> result.compute(k1, (k, v) -> (v != null ? v : 0) - subtractions.get(k)));
+	/**
+	 * Returns the ingredients added to the order, on top of the item's base ingredients.
+	 *
+	 * @return the additions and their amounts.
+	 */
+	public HashMap<Ingredient, Integer> getAdditions() {
+		return additions;
+	}
 
-		return result;
+	/**
+	 * Returns the ingredients removed from the order, from the item's base ingredients.
+	 *
+	 * @return the subtractions and their amounts.
+	 */
+	public HashMap<Ingredient, Integer> getSubtractions() {
+		return subtractions;
+	}
+
+	/**
+	 * Replaces the ingredients added to the order. Since this changes its price, it must not be on a table's
+	 * bill yet.
+	 *
+	 * @param additions the new additions.
+	 */
+	public void setAdditions(HashMap<Ingredient, Integer> additions) {
+		HashMap<Ingredient, Double> prices = getPrices(additions);
+		additionPrices.forEach((ingredient, price) -> prices.replace(ingredient, price)); // Keep earlier prices
+		this.additions = additions;
+		this.additionPrices = prices;
+		this.price = computePrice();
+		this.ingredients = null;
+	}
+
+	/**
+	 * Replaces the ingredients removed from the order.
+	 *
+	 * @param subtractions the new subtractions.
+	 */
+	public void setSubtractions(HashMap<Ingredient, Integer> subtractions) {
+		this.subtractions = subtractions;
+		this.ingredients = null;
 	}
 
 	/**
@@ -143,6 +271,42 @@ public class Order implements Comparable{
 		return orderNumber;
 	}
 
+	/**
+	 * Returns the priority of the Order. Higher priorities are cooked first under the PRIORITY kitchen policy.
+	 *
+	 * @return the priority.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Sets the priority of the Order. Must be set before the order is sent to the kitchen.
+	 *
+	 * @param priority the new priority.
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Returns the time the Order should be cooked by, in milliseconds since the epoch.
+	 *
+	 * @return the deadline.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Sets the time the Order should be cooked by. Must be set before the order is sent to the kitchen.
+	 *
+	 * @param deadline the new deadline, in milliseconds since the epoch.
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
 	/**
 	 * Determines if the order has been received by a cook.
 	 *
@@ -186,10 +350,61 @@ public class Order implements Comparable{
 	 */
 	public void setProgress(int progress) {
 		if (progress >= ORDER_ORDERED && progress <= ORDER_CANCELLED) {
+			int previous = state;
 			state = progress;
+			if (previous != progress) markReached(progress);
+			if (previous != progress && onProgress != null) onProgress.accept(this, previous);
 		}
 	}
 
+	/**
+	 * Sets the progress of an order being restored, without recording when the state was reached or notifying
+	 * the listener; the state was reached in an earlier run.
+	 *
+	 * @param progress the persisted state of the order.
+	 */
+	void restoreProgress(int progress) {
+		if (progress >= ORDER_ORDERED && progress <= ORDER_CANCELLED) state = progress;
+	}
+
+	/**
+	 * Records the monotonic time a state was reached.
+	 */
+	private void markReached(int progress) {
+		reachedAt[progress] = System.nanoTime();
+		reached |= 1 << progress;
+	}
+
+	/**
+	 * Returns if the Order has been in a given state.
+	 *
+	 * @param progress one of the ORDER_* states.
+	 * @return true if the Order reached that state.
+	 */
+	public boolean hasReached(int progress) {
+		return (reached & 1 << progress) != 0;
+	}
+
+	/**
+	 * Returns when the Order reached a given state, on the System.nanoTime() clock. Only meaningful compared to
+	 * other such times, and only if hasReached(progress).
+	 *
+	 * @param progress one of the ORDER_* states.
+	 * @return the time in nanoseconds.
+	 */
+	public long getReachedAt(int progress) {
+		return reachedAt[progress];
+	}
+
+	/**
+	 * Sets the listener notified whenever the state of the Order changes.
+	 *
+	 * @param onProgress the listener, called with this order and its previous state, or null for none.
+	 */
+	void setOnProgress(ObjIntConsumer<Order> onProgress) {
+		this.onProgress = onProgress;
+	}
+
 	/**
 	 * Returns the progress of the Order.
 	 *
@@ -202,12 +417,51 @@ public class Order implements Comparable{
 	/**
 	 * Returns the Server of the Order.
 	 *
-	 * @return a Server.
+	 * @return a Server, or null if the Order was restored and its server has not logged in since.
 	 */
 	public Server getServer() {
 		return server;
 	}
 
+	/**
+	 * Returns the user name of the Server of the Order.
+	 *
+	 * @return the server's user name.
+	 */
+	public String getServerName() {
+		return serverName;
+	}
+
+	/**
+	 * Gives a restored Order its Server once the server logs in.
+	 *
+	 * @param server the Server whose user name is getServerName().
+	 */
+	void setServer(Server server) {
+		if (this.server == null) this.server = server;
+	}
+
+	/**
+	 * Takes the next order number.
+	 */
+	private static synchronized int nextOrderNumber() {
+		return orderNumberCounter++;
+	}
+
+	/**
+	 * Returns the number the next order will be given.
+	 */
+	static synchronized int peekOrderNumber() {
+		return orderNumberCounter;
+	}
+
+	/**
+	 * Makes sure new orders are numbered after a restored order.
+	 */
+	static synchronized void advanceOrderNumber(int orderNumber) {
+		orderNumberCounter = Math.max(orderNumberCounter, orderNumber + 1);
+	}
+
 	/**
 	 * Returns  String Representation of a Order.
 	 *
@@ -0,0 +1,202 @@
+package core;
+
+import visual.gui.Server;
+
+import java.util.*;
+
+/**
+ * Keeps track of the restaurant's orders, indexed by order number, by state and by server.
+ * <p>
+ * Only live orders are indexed. When a table is cleared its orders are archived: the archive record is
+ * journaled and the order is dropped, so lookups, screen refreshes and snapshots cost in proportion to the
+ * orders still in service rather than the whole day's history. Orders report their own state changes, so the
+ * state index never needs a rescan.
+ */
+public class OrderStore {
+	private static final Comparator<Order> BY_NUMBER = Comparator.comparingInt(Order::getOrderNumber);
+
+	private final HashMap<Integer, Order> byNumber; // Live orders by order number
+	private final HashMap<Integer, TreeSet<Order>> byState; // Live orders by state, oldest first
+	private final HashMap<String, TreeSet<Order>> activeByServer; // Orders not yet delivered or cancelled, by server
+	private final LatencyTracker latency; // Told about every state change of a live order
+	private Persistence persistence; // Journals every change to the live orders
+
+	/**
+	 * Creates an empty OrderStore.
+	 *
+	 * @param latency measures how long the orders spend in each stage.
+	 */
+	public OrderStore(LatencyTracker latency) {
+		this.latency = latency;
+		byNumber = new HashMap<>();
+		byState = new HashMap<>();
+		activeByServer = new HashMap<>();
+	}
+
+	/**
+	 * Sets the persistence engine to journal changes to.
+	 *
+	 * @param persistence the restaurant's Persistence.
+	 */
+	void setPersistence(Persistence persistence) {
+		this.persistence = persistence;
+	}
+
+	/**
+	 * Adds an order to the store. Adding an order that is already in the store has no effect.
+	 *
+	 * @param order the order to add.
+	 */
+	public synchronized void add(Order order) {
+		if (byNumber.putIfAbsent(order.getOrderNumber(), order) != null) return;
+
+		index(order, order.getProgress());
+		order.setOnProgress(this::progressChanged);
+		if (persistence != null) persistence.orderAdded(order);
+	}
+
+	/**
+	 * Moves an order from the index of its old state to the index of its new state.
+	 *
+	 * @param order    the order that changed.
+	 * @param oldState the state the order was in.
+	 */
+	private synchronized void progressChanged(Order order, int oldState) {
+		if (!byNumber.containsKey(order.getOrderNumber())) return;
+
+		unindex(order, oldState);
+		index(order, order.getProgress());
+		latency.progressChanged(order);
+		if (persistence != null) persistence.orderProgressed(order);
+	}
+
+	/**
+	 * Adds an order to the state and server indexes.
+	 */
+	private void index(Order order, int state) {
+		byState.computeIfAbsent(state, key -> new TreeSet<>(BY_NUMBER)).add(order);
+		if (isActive(state)) {
+			activeByServer.computeIfAbsent(serverKey(order.getServerName()), key -> new TreeSet<>(BY_NUMBER))
+					.add(order);
+		}
+	}
+
+	/**
+	 * Removes an order from the state and server indexes.
+	 */
+	private void unindex(Order order, int state) {
+		TreeSet<Order> orders = byState.get(state);
+		if (orders != null) orders.remove(order);
+
+		if (isActive(state)) {
+			orders = activeByServer.get(serverKey(order.getServerName()));
+			if (orders != null) orders.remove(order);
+		}
+	}
+
+	/**
+	 * Returns the key of a server in the server index; user names are case insensitive.
+	 */
+	private static String serverKey(String serverName) {
+		return serverName == null ? "" : serverName.toLowerCase();
+	}
+
+	/**
+	 * Returns if orders in the given state are still in progress.
+	 */
+	private static boolean isActive(int state) {
+		return state < Order.ORDER_DELIVERED;
+	}
+
+	/**
+	 * Gets a live order by its order number.
+	 *
+	 * @param orderNumber an order number.
+	 * @return the order, or null if there is no such live order.
+	 */
+	public synchronized Order get(int orderNumber) {
+		return byNumber.get(orderNumber);
+	}
+
+	/**
+	 * Gets the live orders in a given state, oldest first.
+	 *
+	 * @param state one of the Order.ORDER_* states.
+	 * @return a new list of orders.
+	 */
+	public synchronized ArrayList<Order> getOrders(int state) {
+		TreeSet<Order> orders = byState.get(state);
+		return orders == null ? new ArrayList<>() : new ArrayList<>(orders);
+	}
+
+	/**
+	 * Gets the orders that have not yet been delivered or cancelled, oldest first.
+	 *
+	 * @return a new list of orders.
+	 */
+	public synchronized ArrayList<Order> getActiveOrders() {
+		TreeSet<Order> result = new TreeSet<>(BY_NUMBER);
+		byState.forEach((state, orders) -> {
+			if (isActive(state)) result.addAll(orders);
+		});
+		return new ArrayList<>(result);
+	}
+
+	/**
+	 * Gets a server's orders that have not yet been delivered or cancelled, oldest first.
+	 *
+	 * @param server a server.
+	 * @return a new list of orders.
+	 */
+	public synchronized ArrayList<Order> getActiveOrders(Server server) {
+		TreeSet<Order> orders = activeByServer.get(serverKey(server.getUser()));
+		return orders == null ? new ArrayList<>() : new ArrayList<>(orders);
+	}
+
+	/**
+	 * Gives every live order restored without its Server the Server that just logged in.
+	 *
+	 * @param server a Server that logged in.
+	 */
+	public synchronized void rebind(Server server) {
+		for (Order order : byNumber.values()) {
+			if (order.getServer() == null && serverKey(order.getServerName()).equals(serverKey(server.getUser()))) {
+				order.setServer(server);
+			}
+		}
+	}
+
+	/**
+	 * Gets every live order, oldest first.
+	 *
+	 * @return a new list of orders.
+	 */
+	public synchronized ArrayList<Order> getAll() {
+		ArrayList<Order> result = new ArrayList<>(byNumber.values());
+		result.sort(BY_NUMBER);
+		return result;
+	}
+
+	/**
+	 * Archives an order: journals its final state and drops it from the live indexes. Nothing keeps the order
+	 * once its table has let go of it too.
+	 *
+	 * @param order the order to archive.
+	 */
+	public synchronized void archive(Order order) {
+		if (byNumber.remove(order.getOrderNumber()) == null) return;
+
+		unindex(order, order.getProgress());
+		order.setOnProgress(null);
+		if (persistence != null) persistence.orderArchived(order);
+	}
+
+	/**
+	 * Returns the number of live orders.
+	 *
+	 * @return the number of live orders.
+	 */
+	public synchronized int size() {
+		return byNumber.size();
+	}
+}
@@ -0,0 +1,194 @@
+package core;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bill that was paid, as recorded in the PaymentLedger. Amounts are in cents.
+ */
+public class Payment {
+	private final LocalDateTime time; // When the bill was printed
+	private final int tableNumber; // The table that paid
+	private final int tableSize; // The number of seats at the table
+	private final int seat; // The seat that paid, or 0 for the whole table
+	private final String server; // User name of the server, or "" if unknown
+	private final long subtotal; // Price of the orders
+	private final long tax; // Tax on the subtotal
+	private final long tip; // Automatic gratuity
+	private final List<Item> items; // The menu items on the bill
+
+	/**
+	 * A menu item on a bill.
+	 */
+	public static class Item {
+		private final String name; // The name of the MenuItem
+		private final long price; // The price paid, with additions, in cents
+
+		/**
+		 * Creates an Item.
+		 *
+		 * @param name  the name of the MenuItem.
+		 * @param price the price paid, in cents.
+		 */
+		public Item(String name, long price) {
+			this.name = name;
+			this.price = price;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getPrice() {
+			return price;
+		}
+	}
+
+	/**
+	 * Creates a Payment.
+	 *
+	 * @param time        when the bill was printed.
+	 * @param tableNumber the table that paid.
+	 * @param tableSize   the number of seats at the table.
+	 * @param seat        the seat that paid, or 0 for the whole table.
+	 * @param server      the user name of the server.
+	 * @param subtotal    the price of the orders, in cents.
+	 * @param tax         the tax, in cents.
+	 * @param tip         the automatic gratuity, in cents.
+	 * @param items       the menu items on the bill.
+	 */
+	public Payment(LocalDateTime time, int tableNumber, int tableSize, int seat, String server,
+				   long subtotal, long tax, long tip, List<Item> items) {
+		this.time = time;
+		this.tableNumber = tableNumber;
+		this.tableSize = tableSize;
+		this.seat = seat;
+		this.server = server == null ? "" : server;
+		this.subtotal = subtotal;
+		this.tax = tax;
+		this.tip = tip;
+		this.items = Collections.unmodifiableList(new ArrayList<>(items));
+	}
+
+	public LocalDateTime getTime() {
+		return time;
+	}
+
+	public int getTableNumber() {
+		return tableNumber;
+	}
+
+	public int getTableSize() {
+		return tableSize;
+	}
+
+	public int getSeat() {
+		return seat;
+	}
+
+	public String getServer() {
+		return server;
+	}
+
+	public long getSubtotal() {
+		return subtotal;
+	}
+
+	public long getTax() {
+		return tax;
+	}
+
+	public long getTip() {
+		return tip;
+	}
+
+	public List<Item> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the amount paid.
+	 *
+	 * @return the subtotal, tax and tip, in cents.
+	 */
+	public long getTotal() {
+		return subtotal + tax + tip;
+	}
+
+	/**
+	 * Formats an amount of cents as dollars, e.g. "$12.05".
+	 *
+	 * @param cents the amount.
+	 * @return the formatted amount.
+	 */
+	public static String format(long cents) {
+		return String.format("%s$%d.%02d", cents < 0 ? "-" : "", Math.abs(cents) / 100, Math.abs(cents) % 100);
+	}
+
+	/**
+	 * Returns this payment as a ledger record.
+	 */
+	JSONObject toJSON() {
+		JSONObject data = new JSONObject();
+		data.put("time", time.toString());
+		data.put("table", tableNumber);
+		data.put("size", tableSize);
+		data.put("seat", seat);
+		data.put("server", server);
+		data.put("subtotal", subtotal);
+		data.put("tax", tax);
+		data.put("tip", tip);
+
+		JSONArray lines = new JSONArray();
+		for (Item item : items) {
+			JSONObject line = new JSONObject();
+			line.put("name", item.name);
+			line.put("price", item.price);
+			lines.add(line);
+		}
+		data.put("items", lines);
+		return data;
+	}
+
+	/**
+	 * Parses a ledger record written by toJSON(). Records written before table sizes and items were recorded
+	 * have a size of 0 and no items.
+	 */
+	static Payment parse(JSONObject data) {
+		ArrayList<Item> items = new ArrayList<>();
+		JSONArray lines = (JSONArray) data.get("items");
+		if (lines != null) {
+			for (Object line : lines) {
+				JSONObject item = (JSONObject) line;
+				items.add(new Item((String) item.get("name"), (Long) item.get("price")));
+			}
+		}
+
+		Long size = (Long) data.get("size");
+		return new Payment(LocalDateTime.parse((String) data.get("time")),
+				((Long) data.get("table")).intValue(),
+				size == null ? 0 : size.intValue(),
+				((Long) data.get("seat")).intValue(),
+				(String) data.get("server"),
+				(Long) data.get("subtotal"),
+				(Long) data.get("tax"),
+				(Long) data.get("tip"),
+				items);
+	}
+
+	/**
+	 * Gets a string representation of this payment, e.g. "12:30 Table 3, Seat 2, Server s1: $45.20".
+	 *
+	 * @return the payment as a string.
+	 */
+	@Override
+	public String toString() {
+		return String.format("%02d:%02d Table %d%s, Server %s: %s", time.getHour(), time.getMinute(), tableNumber,
+				seat == 0 ? "" : ", Seat " + seat, server.isEmpty() ? "unknown" : server, format(getTotal()));
+	}
+}
@@ -0,0 +1,234 @@
+package core;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An append-only ledger of payments, partitioned by business date, with the revenue of each date rolled up.
+ * <p>
+ * Each business date has its own payments in the StorageBackend, which are only ever appended to, so recording
+ * a bill never rewrites history and reading a date only reads that date's payments. Each date also has a small
+ * rollup with its Revenue and how far its payments extended when it was written; it is rewritten after each
+ * payment of that date, and on startup any date whose payments extend further than its rollup (e.g. after a
+ * crash between the two writes) is rolled up again from its payments. Payments and rollups are written in the
+ * background by the StorageWriter, and the rollup writes of a date are coalesced.
+ * <p>
+ * Payments still waiting for the writer are kept in memory until they have been appended, so reading the
+ * payments of a date never waits for the writer to flush or sync. Reads and appends exclude each other, so a
+ * read sees every payment exactly once, either in the storage or in memory.
+ */
+public class PaymentLedger {
+	/**
+	 * Bills printed before this time belong to the previous business date.
+	 */
+	public static final LocalTime DAY_STARTS_AT = LocalTime.of(4, 0);
+
+	private final StorageBackend storage; // Where payments and rollups are kept
+	private final StorageWriter writer; // Performs the writes in the background
+	private final TreeMap<LocalDate, Revenue> days = new TreeMap<>(); // The revenue of every date
+	// How far the written payments of each date extend, -1 if one failed; only changed by the writer after startup
+	private final ConcurrentHashMap<LocalDate, Long> extents = new ConcurrentHashMap<>();
+	// Payments recorded but not yet appended to the storage, by business date
+	private final ConcurrentHashMap<LocalDate, ConcurrentLinkedQueue<Payment>> unwritten = new ConcurrentHashMap<>();
+	private final Object appending = new Object(); // Held while payments are appended or read
+
+	/**
+	 * Creates a PaymentLedger and loads the revenue of every date.
+	 *
+	 * @param storage where payments and rollups are kept.
+	 * @param writer  performs the writes in the background.
+	 */
+	public PaymentLedger(StorageBackend storage, StorageWriter writer) {
+		this.storage = storage;
+		this.writer = writer;
+
+		try {
+			for (LocalDate date : storage.getPaymentDates()) {
+				if (!readRollup(date) || extents.get(date) != storage.getPaymentsExtent(date)) {
+					rollUp(date);
+					writeRollup(date, days.get(date).toJSON());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to load payments: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the business date of a time.
+	 *
+	 * @param time the time.
+	 * @return the date, which is the day before for times before DAY_STARTS_AT.
+	 */
+	public static LocalDate getBusinessDate(LocalDateTime time) {
+		LocalDate date = time.toLocalDate();
+		return time.toLocalTime().isBefore(DAY_STARTS_AT) ? date.minusDays(1) : date;
+	}
+
+	/**
+	 * Adds a payment to the revenue of its business date, and has both the payment and the rollup written.
+	 *
+	 * @param payment the payment.
+	 */
+	public synchronized void record(Payment payment) {
+		LocalDate date = getBusinessDate(payment.getTime());
+		Revenue revenue = days.computeIfAbsent(date, key -> new Revenue());
+		revenue.add(payment);
+
+		String record = payment.toJSON().toJSONString();
+		ConcurrentLinkedQueue<Payment> queued =
+				unwritten.computeIfAbsent(date, key -> new ConcurrentLinkedQueue<>());
+		queued.add(payment);
+		writer.submit(() -> {
+			synchronized (appending) {
+				try {
+					storage.appendPayment(date, record);
+					queued.remove(payment);
+					extents.put(date, storage.getPaymentsExtent(date));
+				} catch (IOException e) {
+					extents.put(date, -1L); // The rollup no longer matches the payments; roll up again on startup
+					throw e; // The payment stays in memory, so it is still listed
+				}
+			}
+		});
+		JSONObject rollup = revenue.toJSON(); // Captured now; written after the payment
+		writer.submit("rollup " + date, () -> writeRollup(date, rollup));
+	}
+
+	/**
+	 * Returns the payments of a business date, oldest first, including those not yet written. Reads the storage,
+	 * so it should not be called on the JavaFX thread; it does not hold up record().
+	 *
+	 * @param date the business date.
+	 * @return a new list of payments; empty if none were made that date.
+	 */
+	public List<Payment> getPayments(LocalDate date) {
+		ArrayList<Payment> payments = new ArrayList<>();
+		synchronized (this) {
+			if (!days.containsKey(date)) return payments;
+		}
+
+		synchronized (appending) {
+			read(date, payments);
+			ConcurrentLinkedQueue<Payment> queued = unwritten.get(date);
+			if (queued != null) payments.addAll(queued); // Not appended yet, so not read either
+		}
+		return payments;
+	}
+
+	/**
+	 * Returns the revenue of a business date.
+	 *
+	 * @param date the business date.
+	 * @return a copy of the revenue, or null if no payments were made that date.
+	 */
+	public synchronized Revenue getRevenue(LocalDate date) {
+		return days.containsKey(date) ? getRevenue(date, date) : null;
+	}
+
+	/**
+	 * Returns the revenue of a range of business dates, summed from the revenue of each date.
+	 *
+	 * @param from the first business date, inclusive.
+	 * @param to   the last business date, inclusive.
+	 * @return the revenue, which is empty if no payments were made in the range.
+	 */
+	public synchronized Revenue getRevenue(LocalDate from, LocalDate to) {
+		Revenue revenue = new Revenue();
+		if (!from.isAfter(to)) days.subMap(from, true, to, true).values().forEach(revenue::add);
+		return revenue;
+	}
+
+	/**
+	 * Returns the business dates on which payments were made.
+	 *
+	 * @return a new list of dates, oldest first.
+	 */
+	public synchronized List<LocalDate> getDates() {
+		return new ArrayList<>(days.keySet());
+	}
+
+	/**
+	 * Reads the payments of a date into a list. Records that are not payments, such as a torn last line from a
+	 * crash mid-append, are skipped.
+	 */
+	private void read(LocalDate date, List<Payment> payments) {
+		JSONParser parser = new JSONParser();
+		try {
+			storage.readPayments(date, record -> {
+				try {
+					payments.add(Payment.parse((JSONObject) parser.parse(record)));
+				} catch (ParseException | RuntimeException ignored) {
+					// Not a complete payment
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Rolls up the revenue of a date from its payments.
+	 */
+	private void rollUp(LocalDate date) throws IOException {
+		long extent = storage.getPaymentsExtent(date);
+		ArrayList<Payment> payments = new ArrayList<>();
+		read(date, payments);
+
+		Revenue revenue = new Revenue();
+		payments.forEach(revenue::add);
+		days.put(date, revenue);
+		extents.put(date, extent);
+	}
+
+	/**
+	 * Reads the rollup of a date.
+	 *
+	 * @return true if the rollup was read, false if it is missing or cannot be read.
+	 */
+	private boolean readRollup(LocalDate date) {
+		try {
+			String rollup = storage.readRollup(date);
+			if (rollup == null) return false;
+
+			JSONObject data = (JSONObject) new JSONParser().parse(rollup);
+			Long extent = (Long) data.get("extent");
+			if (extent == null) return false; // Written by an earlier version
+
+			days.put(date, Revenue.parse((JSONObject) data.get("revenue")));
+			extents.put(date, extent);
+			return true;
+		} catch (IOException | ParseException | RuntimeException e) {
+			System.err.println("Unable to read the payment rollup of " + date + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the rollup of a date, replacing the previous rollup.
+	 *
+	 * @param revenue the revenue of the date, covering every payment written so far.
+	 */
+	private void writeRollup(LocalDate date, JSONObject revenue) {
+		JSONObject data = new JSONObject();
+		data.put("extent", extents.get(date));
+		data.put("revenue", revenue);
+
+		try {
+			storage.writeRollup(date, data.toJSONString());
+		} catch (IOException e) {
+			System.err.println("Unable to write the payment rollup of " + date + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package core;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the whole state of a Restaurant as one snapshot plus a journal of the changes made since.
+ * <p>
+ * The snapshot holds the inventory (including stock reserved by pending orders), the lifetime statistics and
+ * every live order, which is also what makes tables occupied. Every change to an ingredient or a live order is
+ * journaled as an idempotent record, and the records are committed after each batch of events, on the event
+ * thread, so the journal and the snapshots always stand between two batches; the StorageWriter then writes
+ * them in the background. A new snapshot is taken after COMPACT_AFTER records, or SNAPSHOT_PERIOD seconds
+ * after the last one while changes keep coming in.
+ * <p>
+ * On startup the snapshot is loaded and the journal replayed on top of it. Orders placed since the snapshot
+ * are counted in the statistics again. Orders a cook had taken are offered to the kitchen again, since the
+ * cook's screen did not survive the restart, and restored orders get their Server back when it logs in.
+ * Payments are not part of the snapshot, and re-order requests are recomputed from the restored inventory.
+ */
+public class Persistence {
+	public static final int COMPACT_AFTER = 512; // Number of journal records before a snapshot is taken
+	public static final int SNAPSHOT_PERIOD = 30; // Seconds between snapshots while changes are being made
+
+	private final Restaurant restaurant; // The restaurant being persisted
+	private final StateJournal journal; // The snapshot and journal
+	private JSONObject snapshot; // The snapshot loaded on startup, until it has been restored
+	private TreeMap<Integer, Order> restored; // Live orders being restored, by order number
+	private int snapshotNextOrder; // Orders numbered below this are covered by the loaded snapshot
+	private volatile boolean restoring = true; // If changes are being restored rather than made
+	private long lastSnapshot; // When the last snapshot was taken, in millis
+
+	/**
+	 * Creates a Persistence and loads its snapshot. Nothing is restored until restore() is called.
+	 *
+	 * @param storage    where the snapshot and journal are kept.
+	 * @param writer     performs the writes in the background.
+	 * @param restaurant the restaurant to persist.
+	 */
+	public Persistence(StorageBackend storage, StorageWriter writer, Restaurant restaurant) {
+		this.restaurant = restaurant;
+		this.journal = new StateJournal(storage, writer);
+		this.snapshot = journal.readSnapshot();
+	}
+
+	/**
+	 * Returns the inventory of the loaded snapshot, for the IngredientManager to parse.
+	 *
+	 * @return a JSON array in the format of ingredients.json, or null if there is no snapshot.
+	 */
+	JSONArray getInventory() {
+		return snapshot == null ? null : (JSONArray) snapshot.get("inventory");
+	}
+
+	/**
+	 * Restores the statistics and live orders of the snapshot, replays the journal, and takes a new snapshot.
+	 * Must be called once every part of the restaurant has been created.
+	 */
+	void restore() {
+		restored = new TreeMap<>();
+		if (snapshot != null) {
+			restaurant.getStatistics().restore((JSONObject) snapshot.get("statistics"));
+			for (Object item : (JSONArray) snapshot.get("orders")) {
+				Order order = parseOrder((JSONObject) item);
+				if (order != null) restored.put(order.getOrderNumber(), order);
+			}
+			snapshotNextOrder = ((Long) snapshot.get("nextOrder")).intValue();
+			Order.advanceOrderNumber(snapshotNextOrder - 1);
+		} else {
+			restaurant.getStatistics().restoreLegacy();
+		}
+
+		journal.replay(this::apply);
+
+		OrderStore store = restaurant.getOrderStore();
+		for (Order order : restored.values()) {
+			if (order.isCancelled()) continue;
+			if (order.getProgress() == Order.ORDER_RECEIVED) order.restoreProgress(Order.ORDER_ORDERED);
+
+			store.add(order);
+			order.getTable().updateBill(order);
+			if (order.getProgress() == Order.ORDER_ORDERED) restaurant.sendOrder(order);
+		}
+
+		snapshot = null;
+		restored = null;
+		restoring = false;
+		store.setPersistence(this);
+		snapshot();
+	}
+
+	/**
+	 * Applies a journal record to the state being restored.
+	 */
+	private void apply(JSONObject record) {
+		Order order;
+		switch ((String) record.get("type")) {
+			case "ingredient":
+				IngredientRegistry registry = restaurant.getIngredientManager().getRegistry();
+				String name = (String) record.get("name");
+				if (!registry.contains(name)) return;
+
+				Ingredient ingredient = registry.get(name);
+				ingredient.setAmount(((Long) record.get("amount")).intValue());
+				ingredient.setReserved(((Long) record.get("reserved")).intValue());
+				break;
+			case "order":
+				if (((Long) record.get("number")).intValue() < snapshotNextOrder) return; // Already in the snapshot
+
+				order = parseOrder(record);
+				if (order != null && restored.putIfAbsent(order.getOrderNumber(), order) == null) {
+					restaurant.getStatistics().update(order);
+				}
+				break;
+			case "progress":
+				order = restored.get(((Long) record.get("number")).intValue());
+				int state = ((Long) record.get("state")).intValue();
+				// States only move forward, so an older record replayed over a newer snapshot is ignored
+				if (order != null && state > order.getProgress()) order.restoreProgress(state);
+				break;
+			case "archive":
+				restored.remove(((Long) record.get("number")).intValue());
+				break;
+		}
+	}
+
+	/**
+	 * Called whenever the amount in stock or reserved of an ingredient changes.
+	 *
+	 * @param ingredient the ingredient that changed.
+	 */
+	void ingredientChanged(Ingredient ingredient) {
+		if (restoring) return;
+
+		JSONObject record = new JSONObject();
+		record.put("type", "ingredient");
+		record.put("name", ingredient.getDisplayName());
+		record.put("amount", ingredient.getAmount());
+		record.put("reserved", ingredient.getReserved());
+		journal.record(record);
+	}
+
+	/**
+	 * Called when an order is added to the live orders.
+	 *
+	 * @param order the order.
+	 */
+	void orderAdded(Order order) {
+		if (restoring) return;
+
+		JSONObject record = toJSON(order);
+		record.put("type", "order");
+		journal.record(record);
+	}
+
+	/**
+	 * Called when the state of a live order changes.
+	 *
+	 * @param order the order.
+	 */
+	void orderProgressed(Order order) {
+		if (restoring) return;
+
+		JSONObject record = new JSONObject();
+		record.put("type", "progress");
+		record.put("number", order.getOrderNumber());
+		record.put("state", order.getProgress());
+		journal.record(record);
+	}
+
+	/**
+	 * Called when a live order is archived, i.e. its table was cleared. The record holds the whole order in its
+	 * final state, as nothing in memory keeps the order once it is archived; what was paid for it is kept by the
+	 * PaymentLedger.
+	 *
+	 * @param order the order.
+	 */
+	void orderArchived(Order order) {
+		if (restoring) return;
+
+		JSONObject record = toJSON(order);
+		record.put("type", "archive");
+		journal.record(record);
+	}
+
+	/**
+	 * Commits the changes made since the last commit to the journal, and takes a snapshot if the journal grew
+	 * large enough or the last snapshot is old enough. Must be called between batches of events.
+	 */
+	public void commit() {
+		journal.commit();
+
+		int records = journal.getRecords();
+		if (records >= COMPACT_AFTER || records > 0
+				&& System.currentTimeMillis() - lastSnapshot >= TimeUnit.SECONDS.toMillis(SNAPSHOT_PERIOD)) {
+			snapshot();
+		}
+	}
+
+	/**
+	 * Hands the changes made since the last commit to the writer, without taking a snapshot. Used on shutdown,
+	 * before the writer is flushed.
+	 */
+	void flush() {
+		journal.commit();
+	}
+
+	/**
+	 * Rotates the journal and writes a snapshot of the current state in the background.
+	 */
+	private void snapshot() {
+		lastSnapshot = System.currentTimeMillis();
+		journal.compact(this::toJSONString);
+	}
+
+	/**
+	 * Captures the whole state of the restaurant.
+	 *
+	 * @return the snapshot as a JSON string.
+	 */
+	private String toJSONString() {
+		JSONArray orders = new JSONArray();
+		for (Order order : restaurant.getOrderStore().getAll()) {
+			if (!order.isCancelled()) orders.add(toJSON(order));
+		}
+
+		JSONObject data = new JSONObject();
+		data.put("nextOrder", Order.peekOrderNumber());
+		data.put("inventory", restaurant.getIngredientManager().toJSON());
+		data.put("statistics", restaurant.getStatistics().toJSON());
+		data.put("orders", orders);
+		return data.toJSONString();
+	}
+
+	/**
+	 * Returns an order as JSON.
+	 */
+	private static JSONObject toJSON(Order order) {
+		JSONObject data = new JSONObject();
+		data.put("number", order.getOrderNumber());
+		data.put("item", order.getItem().getName());
+		data.put("additions", toJSON(order.getAdditions()));
+		data.put("subtractions", toJSON(order.getSubtractions()));
+		data.put("table", order.getTable().getTableNumber());
+		data.put("seat", order.getSeatNumber());
+		data.put("server", order.getServerName());
+		data.put("priority", order.getPriority());
+		data.put("state", order.getProgress());
+		return data;
+	}
+
+	/**
+	 * Returns ingredient amounts as a JSON object of display names to amounts.
+	 */
+	private static JSONObject toJSON(Map<Ingredient, Integer> ingredients) {
+		JSONObject data = new JSONObject();
+		if (ingredients != null) {
+			ingredients.forEach((ingredient, amount) -> data.put(ingredient.getDisplayName(), amount));
+		}
+		return data;
+	}
+
+	/**
+	 * Recreates an order from JSON.
+	 *
+	 * @return the order, or null if its item, table or ingredients no longer exist.
+	 */
+	private Order parseOrder(JSONObject data) {
+		MenuItem item = restaurant.getMenu().get((String) data.get("item"));
+		Table table = restaurant.getTable(((Long) data.get("table")).intValue());
+		HashMap<Ingredient, Integer> additions = parseIngredients((JSONObject) data.get("additions"));
+		HashMap<Ingredient, Integer> subtractions = parseIngredients((JSONObject) data.get("subtractions"));
+		if (item == null || table == null || additions == null || subtractions == null) {
+			System.err.println("Unable to restore order " + data.get("number"));
+			return null;
+		}
+
+		Order order = new Order(item, additions, subtractions, table, ((Long) data.get("seat")).intValue(),
+				(String) data.get("server"), ((Long) data.get("number")).intValue());
+		order.setPriority(((Long) data.get("priority")).intValue());
+		order.restoreProgress(((Long) data.get("state")).intValue());
+		return order;
+	}
+
+	/**
+	 * Parses ingredient amounts written by toJSON(Map).
+	 *
+	 * @return the ingredients and amounts, or null if one of the ingredients no longer exists.
+	 */
+	private HashMap<Ingredient, Integer> parseIngredients(JSONObject data) {
+		IngredientRegistry registry = restaurant.getIngredientManager().getRegistry();
+		HashMap<Ingredient, Integer> ingredients = new HashMap<>();
+		for (Object key : data.keySet()) {
+			if (!registry.contains((String) key)) return null;
+			ingredients.put(registry.get((String) key), ((Long) data.get(key)).intValue());
+		}
+		return ingredients;
+	}
+}
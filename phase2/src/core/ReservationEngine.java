@@ -0,0 +1,110 @@
+package core;
+
+/**
+ * Applies a whole order's ingredient vector to the inventory all-or-nothing.
+ * <p>
+ * Each Ingredient's own monitor is used as its lock, and the monitors of an order are always taken in
+ * ascending registry id order, so two orders sharing ingredients can never deadlock. Orders that share no
+ * ingredients never contend, and the check and the update happen while every involved monitor is held, so
+ * two servers can no longer both pass the check and overdraw stock.
+ */
+class ReservationEngine {
+	/**
+	 * A check and update applied to every ingredient of an order while their monitors are held.
+	 */
+	private interface Operation {
+		/**
+		 * @return true if the amount can be applied to the ingredient.
+		 */
+		boolean canApply(Ingredient ingredient, int amount);
+
+		/**
+		 * Applies the amount to the ingredient.
+		 */
+		void apply(Ingredient ingredient, int amount);
+	}
+
+	private static final Operation RESERVE = new Operation() {
+		@Override
+		public boolean canApply(Ingredient ingredient, int amount) {
+			return ingredient.getAmount() >= amount;
+		}
+
+		@Override
+		public void apply(Ingredient ingredient, int amount) {
+			ingredient.reserve(amount);
+		}
+	};
+
+	private static final Operation CONSUME = new Operation() {
+		@Override
+		public boolean canApply(Ingredient ingredient, int amount) {
+			return ingredient.getReserved() >= amount;
+		}
+
+		@Override
+		public void apply(Ingredient ingredient, int amount) {
+			ingredient.useReserved(amount);
+		}
+	};
+
+	private static final Operation RELEASE = new Operation() {
+		@Override
+		public boolean canApply(Ingredient ingredient, int amount) {
+			return ingredient.getReserved() >= amount;
+		}
+
+		@Override
+		public void apply(Ingredient ingredient, int amount) {
+			ingredient.redactReserved(amount);
+		}
+	};
+
+	/**
+	 * Moves the ingredients from available stock to reserved stock if all of them are available.
+	 *
+	 * @param ingredients the ingredients and amounts needed.
+	 * @return true if everything was reserved, false if nothing was.
+	 */
+	boolean reserve(IngredientVector ingredients) {
+		return lockAndRun(ingredients, 0, RESERVE);
+	}
+
+	/**
+	 * Uses up previously reserved ingredients if all of them are still reserved.
+	 *
+	 * @param ingredients the ingredients and amounts to use.
+	 * @return true if everything was used, false if nothing was.
+	 */
+	boolean consume(IngredientVector ingredients) {
+		return lockAndRun(ingredients, 0, CONSUME);
+	}
+
+	/**
+	 * Returns previously reserved ingredients to available stock.
+	 *
+	 * @param ingredients the ingredients and amounts to return.
+	 * @return true if everything was returned, false if nothing was.
+	 */
+	boolean release(IngredientVector ingredients) {
+		return lockAndRun(ingredients, 0, RELEASE);
+	}
+
+	/**
+	 * Takes the monitor of ingredient i, then recurses; once every monitor is held the operation is applied.
+	 * The vector is already sorted by id, so the monitors are always taken in the same order.
+	 */
+	private boolean lockAndRun(IngredientVector ingredients, int i, Operation operation) {
+		if (i == ingredients.size()) {
+			for (int j = 0; j < ingredients.size(); j++) {
+				if (!operation.canApply(ingredients.getIngredient(j), ingredients.getAmount(j))) return false;
+			}
+			ingredients.forEach(operation::apply);
+			return true;
+		}
+
+		synchronized (ingredients.getIngredient(i)) {
+			return lockAndRun(ingredients, i + 1, operation);
+		}
+	}
+}
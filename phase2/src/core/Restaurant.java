@@ -1,21 +1,20 @@
 package core;
 
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import events.EventBus;
 import util.InvalidIngredientException;
 import util.Log;
-import visual.gui.Cook;
 import visual.gui.Employee;
-import visual.gui.Manager;
+import visual.gui.Server;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * A class representing a restaurant.
@@ -24,11 +23,26 @@ public class Restaurant {
     private HashMap<String, ArrayList<Employee>> employees;//The employees of the restaurant
     private IngredientManager ingredientManager; //An IngredientManager
     private String name; // the Restaurant name
-    private Menu menu; //the menu
+    private volatile Menu menu; //the menu; replaced as a whole when menu.json changes
+    private volatile MakeableCache makeable; // How many portions of each menu item can be made
     private Statistics statistics; // the Restaurant statistics
 
-    private ArrayList<Order> allOrders; // All of the kitchen's orders
-    private ArrayList<Table> tables;
+    private OrderStore orders; // All of the kitchen's live orders
+    private final LatencyTracker latency; // How long orders spend in each stage
+    private FloorPlan floor; // The tables, by number and by number of seats
+    private KitchenQueue kitchenQueue; // Orders waiting for a cook
+    private final EventBus eventBus; // Applies events and notifies the screens
+    private String storageType; // The "storage" setting, see StorageBackend
+    private final StorageBackend storage; // Where the state, payments and accounts are kept
+    private long groupCommit = StorageWriter.DEFAULT_INTERVAL; // The "group_commit_ms" setting
+    private final StorageWriter writer; // Performs every write of the storage in the background
+    private final Persistence persistence; // Snapshots and journals the restaurant's state
+    private final PaymentLedger payments; // Every bill paid, by business date
+    private final CompletableFuture<JSONArray> accounts; // The accounts that can log in, loaded on startup
+    private final File menuFile; // menu.json, reloaded when it changes
+    private final File ingredientsFile; // ingredients.json, reloaded when it changes
+
+    private static final String DATA = "resources/data"; // Where the state and payments are kept
 
     /**
      * Creates a restaurant.
@@ -37,37 +51,214 @@ public class Restaurant {
      * @param ingredients The ingredients file
      * @param requests    The file to add ingredient reorders to
      * @param menu        the file containing the menu
+     * @param accounts    the file containing the accounts that can log in
      */
-    public Restaurant(File settings, File ingredients, File requests, File menu) {
+    public Restaurant(File settings, File ingredients, File requests, File menu, File accounts) {
         employees = new HashMap<>();
-        this.allOrders = new ArrayList<>();
-        tables = new ArrayList<>();
-        ingredientManager = new IngredientManager(ingredients, requests, this);
-        ingredientManager.log();
-        this.menu = new Menu(menu, this);
+        eventBus = new EventBus();
+        latency = new LatencyTracker();
+        this.orders = new OrderStore(latency);
+        menuFile = menu;
+        ingredientsFile = ingredients;
+
+        // Everything that does not depend on the settings is parsed while they are applied
+        JsonLoader loader = new JsonLoader();
+        CompletableFuture<JSONObject> settingsData = loader.loadObject(settings);
+        CompletableFuture<List<Ingredient>> ingredientsData =
+                loader.loadArray(ingredients, IngredientManager::parseIngredient);
+        CompletableFuture<List<JSONObject>> menuData = loader.loadArray(menu, dish -> (JSONObject) dish);
 
         try {
-            parseSettings(settings);
-        } catch (IOException | ParseException e) {
+            parseSettings(settingsData.join());
+        } catch (CompletionException | ClassCastException e) {
             e.printStackTrace();
         }
+        if (kitchenQueue == null) kitchenQueue = new KitchenQueue(KitchenQueue.Policy.FIFO);
+        if (floor == null) floor = new FloorPlan(new ArrayList<>());
+
+        storage = openStorage(storageType, accounts);
+        writer = new StorageWriter(storage, groupCommit);
+        CompletableFuture<Persistence> state = loader.load("state", () -> new Persistence(storage, writer, this));
+        CompletableFuture<PaymentLedger> ledger = loader.load("payments", () -> new PaymentLedger(storage, writer));
+        this.accounts = loader.load("accounts", storage::readAccounts);
+        persistence = state.join();
+        payments = ledger.join();
+
+        ingredientManager = new IngredientManager(() -> join(ingredientsData), requests, this);
+        this.menu = new Menu(join(menuData), this);
+        makeable = new MakeableCache(this.menu, ingredientManager.getRegistry().size());
+        ingredientManager.setMakeableCache(makeable);
 
         this.statistics = new Statistics(this.menu, ingredientManager.getIngredients(), ingredientManager);
 
+        persistence.restore();
+        // Runs on the event thread right after each batch, so every commit sees a consistent state
+        eventBus.subscribe(events -> persistence.commit(), Runnable::run);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            persistence.flush();
+            writer.close();
+            try {
+                storage.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "state-flush"));
+
         this.checkThresholds();
+        Log.log(toString(), "Loaded " + loader.getTimings());
+
+        ConfigWatcher watcher = new ConfigWatcher();
+        watcher.watch(menu, this::reloadMenu);
+        watcher.watch(ingredients, this::reloadIngredients);
+        watcher.start();
+    }
+
+    /**
+     * Reloads menu.json, replacing the menu with a new version of it. Orders already made keep the items of the
+     * version they were made from, and items keep their ids, so their statistics carry over.
+     *
+     * @throws CompletionException if menu.json cannot be read; the menu is then left as it is.
+     */
+    public synchronized void reloadMenu() {
+        List<JSONObject> data = new JsonLoader().loadArray(menuFile, dish -> (JSONObject) dish).join();
+        Menu next = new Menu(data, this, menu);
+        MakeableCache nextMakeable = new MakeableCache(next, ingredientManager.getRegistry().size());
+
+        // Everything indexed by item id can hold the new ids before anything can see them
+        statistics.setMenu(next);
+        ingredientManager.setMakeableCache(nextMakeable);
+        makeable = nextMakeable;
+        menu = next;
+        Log.log(toString(), "Reloaded the menu, " + next.size() + " items");
     }
 
+    /**
+     * Reloads ingredients.json, updating the prices, thresholds and addability of the ingredients and adding new
+     * ones, without changing the stock. If ingredients were added, the menu is reloaded too, since dishes using
+     * them were skipped before.
+     *
+     * @throws CompletionException if ingredients.json cannot be read; the ingredients are then left as they are.
+     */
+    public synchronized void reloadIngredients() {
+        List<Ingredient> data =
+                new JsonLoader().loadArray(ingredientsFile, IngredientManager::parseIngredient).join();
+        List<Ingredient> added = ingredientManager.update(data);
+        Log.log(toString(), "Reloaded the ingredients, " + added.size() + " added");
+        checkThresholds();
+        if (!added.isEmpty()) reloadMenu();
+    }
+
+    /**
+     * Returns the result of a load, or an empty list if it failed.
+     */
+    private static <T> List<T> join(CompletableFuture<List<T>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns every live order, oldest first.
+     *
+     * @return a new list of orders.
+     */
     public ArrayList<Order> getAllOrders() {
-        return allOrders;
+        return orders.getAll();
+    }
+
+    /**
+     * Returns the store of orders, indexed by number, state and server.
+     *
+     * @return the OrderStore.
+     */
+    public OrderStore getOrderStore() {
+        return orders;
+    }
+
+    /**
+     * Opens the configured storage, falling back to the default if it cannot be opened.
+     *
+     * @param type     the "storage" setting.
+     * @param accounts the file containing the accounts that can log in.
+     * @return the storage.
+     */
+    private static StorageBackend openStorage(String type, File accounts) {
+        try {
+            return StorageBackend.create(type, new File(DATA), accounts);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage() + ", using JSON files instead");
+            e.printStackTrace();
+            return StorageBackend.create(null, new File(DATA), accounts);
+        }
     }
 
+    /**
+     * Returns where the restaurant's state, payments and accounts are kept.
+     *
+     * @return the StorageBackend.
+     */
+    public StorageBackend getStorage() {
+        return storage;
+    }
 
+    /**
+     * Returns the writer that performs every write of the storage in the background.
+     *
+     * @return the StorageWriter.
+     */
+    public StorageWriter getStorageWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the accounts that can log in, in the format of accounts.json.
+     *
+     * @return the accounts, by type of employee.
+     * @throws IOException if the accounts cannot be read.
+     */
+    public JSONArray getAccounts() throws IOException {
+        try {
+            return accounts.join();
+        } catch (CompletionException e) {
+            throw new IOException(e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Returns the engine persisting the restaurant's state.
+     *
+     * @return the Persistence.
+     */
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * Returns the ledger of every bill paid.
+     *
+     * @return the PaymentLedger.
+     */
+    public PaymentLedger getPaymentLedger() {
+        return payments;
+    }
+
+    /**
+     * Returns the tracker of how long orders spend in each stage of the kitchen.
+     *
+     * @return the LatencyTracker.
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latency;
+    }
 
     /** Add an order to keep track of
      * @param order order to add
      */
     public void addOrder(Order order){
-        allOrders.add(order);
+        orders.add(order);
     }
 
     /**
@@ -76,20 +267,18 @@ public class Restaurant {
      * @param order the order to check.
      * @return true if there are enough ingredients to make the order; false otherwise.
      */
-    //TODO:
     public boolean checkIngredients(Order order) {
-        Map<Ingredient, Integer> ingredients = order.getAllIngredients();
-        for (Map.Entry<Ingredient, Integer> entry : ingredients.entrySet()) {
-            Optional<Ingredient> ing = getInventoryList().stream().filter(a -> a.equals(entry.getKey())).findFirst();
-
-            if (!ing.isPresent()) {
-                throw new InvalidIngredientException(entry.getKey().getDisplayName() + " is not a valid ingredient.");
+        IngredientRegistry registry = ingredientManager.getRegistry();
+        IngredientVector ingredients = order.getIngredients();
+        for (int i = 0; i < ingredients.size(); i++) {
+            Ingredient ingredient = ingredients.getIngredient(i);
+            if (!registry.contains(ingredient)) {
+                throw new InvalidIngredientException(ingredient.getDisplayName() + " is not a valid ingredient.");
             } else {
-                if (entry.getKey().getAmount() < entry.getValue()) return false;
+                if (ingredient.getAmount() < ingredients.getAmount(i)) return false;
             }
         }
 
-        statistics.update(order);
         return true;
     }
 
@@ -100,27 +289,14 @@ public class Restaurant {
      */
     //TODO
     public void updateInventory(Order order) {
-        order.getAllIngredients().forEach(Ingredient::update);
+        order.getIngredients().forEach(Ingredient::update);
     }
 
     /**
-     * Forces the kitchen to check the thresholds.
+     * Forces the kitchen to check the thresholds of every ingredient whose amount changed since the last check.
      */
-    //TODO
     public void checkThresholds() {
-        this.getInventoryList().forEach(a -> {
-            // Update external file
-            if (a.getAmount() < a.getThreshold()) {
-                if (!ingredientManager.isInReorder(a))
-                    Log.log(this, String.format("Now requesting %s units of %s", //TODO: double check the this
-                            IngredientManager.DEFAULT_ORDER_AMOUNT, a.getDisplayName()));
-                ingredientManager.reorderIngredient(a);
-            } else {
-                ingredientManager.removeReorderIngredient(a);
-            }
-
-            ingredientManager.updateRequestsFile();
-        });
+        ingredientManager.checkThresholds();
     }
 
     /**
@@ -130,63 +306,102 @@ public class Restaurant {
      * @return the table with the specified table number.
      */
     public Table getTable(int tableNumber) {
-        for (Table table : tables) {
-            if (table.getTableNumber() == tableNumber) {
-                return table;
-            }
-        }
-
-        return null;
+        return floor.getTable(tableNumber);
     }
 
     public int getNumTables() {
-        return this.tables.size();
+        return floor.getTables().size();
     }
 
     public ArrayList<Table> getTables() {
-        return this.tables;
+        return floor.getTables();
     }
 
     /**
-     * Sends an order to the cooks
+     * Archives the orders of a table, including those cancelled and so no longer on its bill, and clears it, so
+     * it is free to be seated again. A table with orders still to be delivered is not cleared; those orders are
+     * still in the kitchen, with their ingredients reserved, and must be delivered or cancelled first.
      *
-     * @param order the order to be assigned.
+     * @param table the table.
+     * @return true if the table was cleared, false if it still has orders to be delivered.
      */
-    public void sendOrder(Order order) {
-        Cook.assignOrder(order);
-        ArrayList<Employee> allCooks = this.employees.get("Cook");
+    public boolean clearTable(Table table) {
+        if (table.hasUndeliveredOrders()) return false;
 
-        if(allCooks == null)return;
-        allCooks.forEach(employee -> {
-            Cook cook = (Cook) employee;
-            if (cook.isAvailable()) cook.refreshAssigned();
+        table.getOrders().forEach(orders::archive);
+        for (Order order : orders.getOrders(Order.ORDER_CANCELLED)) {
+            if (order.getTable() == table) orders.archive(order);
+        }
+        table.clearOrders();
+        table.clearPayment();
+        return true;
+    }
 
-        });
+    /**
+     * Archives the orders of one seat of a table and takes them off the table, e.g. once the seat has paid. The
+     * table is cleared once none of its seats has orders left. A seat with orders still to be delivered is not
+     * cleared.
+     *
+     * @param table the table.
+     * @param seat  the seat number.
+     * @return true if the seat was cleared, false if it still has orders to be delivered.
+     */
+    public boolean clearSeat(Table table, int seat) {
+        if (table.hasUndeliveredOrders(seat)) return false;
 
+        table.getOrders(seat).forEach(orders::archive);
+        table.clearOrders(seat);
+        if (table.getOrders().isEmpty()) clearTable(table);
+        return true;
     }
 
     /**
-     * Parses a file to set the program settings.
+     * Returns the floor plan, which also finds free tables by size.
      *
-     * @param settings a file containing settings
-     * @throws IOException    Unable to read settings file
-     * @throws ParseException Settings malformed json file
+     * @return the FloorPlan.
      */
-    private void parseSettings(File settings) throws IOException, ParseException {
-        JSONParser parser = new JSONParser();
-        Object obj = parser.parse(new FileReader(settings));
-        JSONObject data = (JSONObject) obj;
-        name = (String) data.get("name");
-        ArrayList<Long> tableSizes = (ArrayList<Long>) data.get("table_layout");
+    public FloorPlan getFloorPlan() {
+        return floor;
+    }
 
-        int tableNum = 1;
+    /**
+     * Returns the bus that events must be published to.
+     *
+     * @return the EventBus.
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
 
-        for (int size = 0; size < tableSizes.size(); size++) {
-            for (long i = 0; i < tableSizes.get(size); i++) {
-                tables.add(new Table(tableNum++, size + 1));
-                System.out.println(size);
-            }
-        }
+    /**
+     * Returns the queue of orders waiting for a cook.
+     *
+     * @return the KitchenQueue.
+     */
+    public KitchenQueue getKitchenQueue() {
+        return kitchenQueue;
+    }
+
+    /**
+     * Sends an order to the cooks
+     *
+     * @param order the order to be assigned.
+     */
+    public void sendOrder(Order order) {
+        kitchenQueue.add(order);
+    }
+
+    /**
+     * Sets the program settings.
+     *
+     * @param data the settings, in the format of settings.json
+     */
+    private void parseSettings(JSONObject data) {
+        name = (String) data.get("name");
+        storageType = (String) data.get("storage");
+        if (data.get("group_commit_ms") instanceof Long) groupCommit = (Long) data.get("group_commit_ms");
+        kitchenQueue = new KitchenQueue(KitchenQueue.Policy.fromString((String) data.get("kitchen_policy")));
+        floor = new FloorPlan((ArrayList<Long>) data.get("table_layout"));
     }
 
     /**
@@ -203,7 +418,7 @@ public class Restaurant {
         }
 
         employees.get(employee.getType()).add(employee);
-        if (employee instanceof Manager) statistics.addManager((Manager) employee);
+        if (employee instanceof Server) orders.rebind((Server) employee);
 
         Log.log(toString(), String.format("%s logged in", employee.toString()));
     }
@@ -217,9 +432,6 @@ public class Restaurant {
         if (employees.containsKey(employee.getType())) {
             employees.get(employee.getType()).remove(employee);
         }
-        if (employee instanceof Manager) {
-            statistics.removeManager((Manager) employee);
-        }
 
         Log.log(toString(), String.format("%s logged out", employee.toString()));
     }
@@ -272,6 +484,15 @@ public class Restaurant {
         return menu;
     }
 
+    /**
+     * Returns the cache of which menu items can currently be made.
+     *
+     * @return the MakeableCache.
+     */
+    public MakeableCache getMakeableCache() {
+        return makeable;
+    }
+
     /**
      * Return an Employee.
      *
@@ -0,0 +1,198 @@
+package core;
+
+import org.json.simple.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Revenue rolled up from payments: in total, by server, by table size and by menu item.
+ * <p>
+ * The PaymentLedger keeps one Revenue per business date and adds each payment to it as the bill is printed, so
+ * the revenue of a date is read without touching its payments, and the revenue of a range of dates is the sum
+ * of one Revenue per date. Amounts are in cents. Server and table size amounts are what was paid, tax and tip
+ * included; menu item amounts are the prices of the orders.
+ */
+public class Revenue {
+	/**
+	 * A number of bills or items and what they brought in.
+	 */
+	public static class Amount {
+		private long count; // Bills paid or items sold
+		private long cents; // Amount brought in
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getCents() {
+			return cents;
+		}
+
+		/**
+		 * Adds to this amount.
+		 */
+		private void add(long count, long cents) {
+			this.count += count;
+			this.cents += cents;
+		}
+	}
+
+	private long bills; // Payments made
+	private long subtotal; // Price of the orders paid for
+	private long tax; // Tax paid
+	private long tip; // Automatic gratuity paid
+	private final TreeMap<String, Amount> byServer = new TreeMap<>(); // By server user name
+	private final TreeMap<Integer, Amount> byTableSize = new TreeMap<>(); // By number of seats at the table
+	private final TreeMap<String, Amount> byItem = new TreeMap<>(); // By MenuItem name
+
+	/**
+	 * Returns the number of payments made.
+	 *
+	 * @return the number of bills paid.
+	 */
+	public long getBills() {
+		return bills;
+	}
+
+	public long getSubtotal() {
+		return subtotal;
+	}
+
+	public long getTax() {
+		return tax;
+	}
+
+	public long getTip() {
+		return tip;
+	}
+
+	/**
+	 * Returns the amount paid.
+	 *
+	 * @return the subtotal, tax and tip, in cents.
+	 */
+	public long getTotal() {
+		return subtotal + tax + tip;
+	}
+
+	/**
+	 * Returns the bills paid and amounts paid for each server.
+	 *
+	 * @return an unmodifiable map of server user names to amounts.
+	 */
+	public SortedMap<String, Amount> getByServer() {
+		return Collections.unmodifiableSortedMap(byServer);
+	}
+
+	/**
+	 * Returns the bills paid and amounts paid for each table size.
+	 *
+	 * @return an unmodifiable map of numbers of seats to amounts.
+	 */
+	public SortedMap<Integer, Amount> getByTableSize() {
+		return Collections.unmodifiableSortedMap(byTableSize);
+	}
+
+	/**
+	 * Returns the items sold and their prices for each menu item.
+	 *
+	 * @return an unmodifiable map of MenuItem names to amounts.
+	 */
+	public SortedMap<String, Amount> getByItem() {
+		return Collections.unmodifiableSortedMap(byItem);
+	}
+
+	/**
+	 * Adds a payment to the rollups.
+	 *
+	 * @param payment the payment.
+	 */
+	void add(Payment payment) {
+		bills++;
+		subtotal += payment.getSubtotal();
+		tax += payment.getTax();
+		tip += payment.getTip();
+		byServer.computeIfAbsent(payment.getServer(), key -> new Amount()).add(1, payment.getTotal());
+		byTableSize.computeIfAbsent(payment.getTableSize(), key -> new Amount()).add(1, payment.getTotal());
+		for (Payment.Item item : payment.getItems()) {
+			byItem.computeIfAbsent(item.getName(), key -> new Amount()).add(1, item.getPrice());
+		}
+	}
+
+	/**
+	 * Adds other rollups to these.
+	 *
+	 * @param revenue the rollups to add.
+	 */
+	void add(Revenue revenue) {
+		bills += revenue.bills;
+		subtotal += revenue.subtotal;
+		tax += revenue.tax;
+		tip += revenue.tip;
+		revenue.byServer.forEach((key, amount) ->
+				byServer.computeIfAbsent(key, k -> new Amount()).add(amount.count, amount.cents));
+		revenue.byTableSize.forEach((key, amount) ->
+				byTableSize.computeIfAbsent(key, k -> new Amount()).add(amount.count, amount.cents));
+		revenue.byItem.forEach((key, amount) ->
+				byItem.computeIfAbsent(key, k -> new Amount()).add(amount.count, amount.cents));
+	}
+
+	/**
+	 * Returns the rollups as JSON.
+	 */
+	JSONObject toJSON() {
+		JSONObject data = new JSONObject();
+		data.put("bills", bills);
+		data.put("subtotal", subtotal);
+		data.put("tax", tax);
+		data.put("tip", tip);
+		data.put("servers", toJSON(byServer));
+		data.put("sizes", toJSON(byTableSize));
+		data.put("items", toJSON(byItem));
+		return data;
+	}
+
+	/**
+	 * Returns amounts as a JSON object of keys to {count, cents}.
+	 */
+	private static JSONObject toJSON(Map<?, Amount> amounts) {
+		JSONObject data = new JSONObject();
+		amounts.forEach((key, amount) -> {
+			JSONObject entry = new JSONObject();
+			entry.put("count", amount.count);
+			entry.put("cents", amount.cents);
+			data.put(key.toString(), entry);
+		});
+		return data;
+	}
+
+	/**
+	 * Parses rollups written by toJSON().
+	 */
+	static Revenue parse(JSONObject data) {
+		Revenue revenue = new Revenue();
+		revenue.bills = (Long) data.get("bills");
+		revenue.subtotal = (Long) data.get("subtotal");
+		revenue.tax = (Long) data.get("tax");
+		revenue.tip = (Long) data.get("tip");
+		parse((JSONObject) data.get("servers"), revenue.byServer, key -> key);
+		parse((JSONObject) data.get("sizes"), revenue.byTableSize, Integer::valueOf);
+		parse((JSONObject) data.get("items"), revenue.byItem, key -> key);
+		return revenue;
+	}
+
+	/**
+	 * Parses amounts written by toJSON(Map).
+	 */
+	private static <K> void parse(JSONObject data, Map<K, Amount> amounts, Function<String, K> key) {
+		for (Object name : data.keySet()) {
+			JSONObject entry = (JSONObject) data.get(name);
+			amounts.computeIfAbsent(key.apply((String) name), k -> new Amount())
+					.add((Long) entry.get("count"), (Long) entry.get("cents"));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Counts events per key over a sliding window of fixed-size time buckets.
+ * <p>
+ * Every key has a ring buffer of the same number of buckets; a slot is reused once its bucket falls out of
+ * the window, so memory never grows with uptime, and a query only sums one ring, i.e. O(buckets).
+ */
+class RollingWindow {
+	private final int buckets; // Number of buckets in the window
+	private final long bucketMillis; // Width of a bucket
+	private long[][] counts; // counts[key][slot]
+	private final long[] epochs; // The bucket number held by each slot, shared by every key
+
+	/**
+	 * Creates a RollingWindow.
+	 *
+	 * @param keys         the number of keys, e.g. MenuItem or Ingredient ids 0 to keys - 1.
+	 * @param buckets      the number of buckets in the window.
+	 * @param bucketMillis the width of a bucket in milliseconds.
+	 */
+	RollingWindow(int keys, int buckets, long bucketMillis) {
+		this.buckets = buckets;
+		this.bucketMillis = bucketMillis;
+		this.counts = new long[keys][buckets];
+		this.epochs = new long[buckets];
+		Arrays.fill(epochs, -1);
+	}
+
+	/**
+	 * Adds to the count of a key in the current bucket.
+	 *
+	 * @param key    the key.
+	 * @param amount the amount to add.
+	 * @param now    the current time in milliseconds.
+	 */
+	synchronized void add(int key, long amount, long now) {
+		long epoch = now / bucketMillis;
+		int slot = (int) (epoch % buckets);
+		if (epochs[slot] != epoch) {
+			// The slot still holds a bucket that has left the window; recycle it for every key
+			for (long[] ring : counts) {
+				ring[slot] = 0;
+			}
+			epochs[slot] = epoch;
+		}
+		counts[key][slot] += amount;
+	}
+
+	/**
+	 * Returns the count of a key over the whole window, up to and including the current bucket.
+	 *
+	 * @param key the key.
+	 * @param now the current time in milliseconds.
+	 * @return the count.
+	 */
+	synchronized long sum(int key, long now) {
+		long oldest = now / bucketMillis - buckets + 1;
+		long[] ring = counts[key];
+		long sum = 0;
+		for (int slot = 0; slot < buckets; slot++) {
+			if (epochs[slot] >= oldest) sum += ring[slot];
+		}
+		return sum;
+	}
+
+	/**
+	 * Adds keys with no counts.
+	 *
+	 * @param keys the new number of keys; nothing changes if there are already as many.
+	 */
+	synchronized void grow(int keys) {
+		int from = counts.length;
+		if (keys <= from) return;
+
+		counts = Arrays.copyOf(counts, keys);
+		for (int key = from; key < keys; key++) {
+			counts[key] = new long[buckets];
+		}
+	}
+
+	/**
+	 * Returns the length of the window.
+	 *
+	 * @return the length of the window in milliseconds.
+	 */
+	long getSpanMillis() {
+		return buckets * bucketMillis;
+	}
+}
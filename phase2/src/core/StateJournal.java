@@ -0,0 +1,138 @@
+package core;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An append-only journal of JSON records, periodically compacted into a JSON snapshot, kept in a StorageBackend.
+ * <p>
+ * Records are queued in memory and handed to the StorageWriter on commit, which appends them to the journal in
+ * the background at O(changes) instead of rewriting the whole state. On compaction the state is captured on
+ * the calling thread, and the writer rotates the journal and writes the new snapshot; the rotated records are
+ * only dropped once the snapshot is in place, so a crash never loses them. Since the writer performs writes in
+ * order, the rotation moves exactly the records the captured state covers.
+ * Records must be idempotent, since a record may be replayed on top of a snapshot that already covers it.
+ * <p>
+ * On startup the snapshot is loaded first, then the rotated journal (if a compaction did not finish), then the
+ * current journal.
+ */
+class StateJournal {
+	private final StorageBackend storage; // Where the snapshot and journal are kept
+	private final StorageWriter writer; // Performs the writes in the background
+	private final ConcurrentLinkedQueue<String> pending; // Records not yet handed to the writer
+	private int records = 0; // Records in the current journal
+	private volatile boolean compacting = false; // If a snapshot is currently being written
+
+	/**
+	 * Creates a StateJournal.
+	 *
+	 * @param storage where the snapshot and journal are kept.
+	 * @param writer  performs the writes in the background.
+	 */
+	StateJournal(StorageBackend storage, StorageWriter writer) {
+		this.storage = storage;
+		this.writer = writer;
+		this.pending = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * Reads the snapshot.
+	 *
+	 * @return the snapshot, or null if there is none or it cannot be read.
+	 */
+	JSONObject readSnapshot() {
+		try {
+			String data = storage.readSnapshot();
+			return data == null ? null : (JSONObject) new JSONParser().parse(data);
+		} catch (IOException | ParseException | ClassCastException e) {
+			System.err.println("Unable to read snapshot: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Replays every journaled record, oldest first. Records that are not JSON objects, such as a torn last line
+	 * from a crash mid-append, are skipped.
+	 *
+	 * @param apply applies a record.
+	 */
+	void replay(Consumer<JSONObject> apply) {
+		JSONParser parser = new JSONParser();
+		try {
+			storage.replayJournal(record -> {
+				try {
+					apply.accept((JSONObject) parser.parse(record));
+				} catch (ParseException | ClassCastException ignored) {
+					return;
+				}
+				records++;
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Queues a record to be appended on the next commit.
+	 *
+	 * @param record the record.
+	 */
+	void record(JSONObject record) {
+		pending.add(record.toJSONString());
+	}
+
+	/**
+	 * Hands every pending record to the writer, to be appended to the journal.
+	 */
+	synchronized void commit() {
+		if (pending.isEmpty()) return;
+
+		ArrayList<String> batch = new ArrayList<>();
+		String record;
+		while ((record = pending.poll()) != null) {
+			batch.add(record);
+		}
+		records += batch.size();
+		writer.submit(() -> storage.appendJournal(batch));
+	}
+
+	/**
+	 * Returns the number of records in the current journal.
+	 *
+	 * @return the number of records since the last compaction.
+	 */
+	synchronized int getRecords() {
+		return records;
+	}
+
+	/**
+	 * Rotates the journal and writes a new snapshot in the background. Once the snapshot is in place, the
+	 * rotated journal is dropped.
+	 *
+	 * @param state captures the current state; called once, on the calling thread.
+	 */
+	synchronized void compact(Supplier<String> state) {
+		if (compacting) return;
+		commit();
+
+		String data = state.get(); // Captured after the commit, so it covers every record the rotation moves
+		records = 0;
+		compacting = true;
+		writer.submit(() -> {
+			try {
+				storage.rotateJournal();
+				storage.writeSnapshot(data);
+				storage.dropRotatedJournal();
+			} finally {
+				compacting = false;
+			}
+		});
+	}
+}
@@ -4,40 +4,110 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
-import visual.gui.Manager;
+import util.InvalidIngredientException;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Keeps track of most ordered dishes and most used ingredients in a Restaurant.
+ * <p>
+ * Usage is counted in LongAdders indexed by MenuItem and Ingredient id, so recording an order is a handful of
+ * uncontended increments and never touches the disk. The counters are saved in the restaurant's snapshots by
+ * Persistence; orders placed since the last snapshot are counted again when the journal is replayed. The usage
+ * shown on MenuItems and Ingredients is a sample of the counters, taken when they are returned as top items.
+ * <p>
+ * The TOP_K most ordered MenuItems and most used Ingredients are also tracked as orders arrive, in a
+ * UsageRanking fed from the same counters, so the best-sellers are read in O(K log K) without sorting, or even
+ * touching, the shared Menu and inventory lists. Listing every item sorts a copy.
+ * <p>
+ * Recent usage is also kept per Window in ring buffers of time buckets, so questions like "what sold in the
+ * last hour" cost O(buckets) and memory stays constant however long the restaurant runs. Rolling windows
+ * start empty at startup; only lifetime usage is persisted.
+ * <p>
+ * When menu.json or ingredients.json is reloaded, the counters grow to the new ids. A MenuItem keeps its id
+ * across versions of the menu, so orders of an earlier version count towards the same dish.
  */
 public class Statistics {
 	/**
-	 * All the ingredients in a restaurant.
+	 * The number of best-selling MenuItems and most used Ingredients tracked as orders arrive.
+	 */
+	public static final int TOP_K = 10;
+
+	/**
+	 * A rolling time window usage can be queried over.
 	 */
-	private ArrayList<Ingredient> ingredients;
+	public enum Window {
+		HOUR(60, TimeUnit.MINUTES.toMillis(1)),
+		SHIFT(48, TimeUnit.MINUTES.toMillis(10)),
+		DAY(24, TimeUnit.HOURS.toMillis(1));
+
+		final int buckets;
+		final long bucketMillis;
+
+		/**
+		 * Creates a Window.
+		 *
+		 * @param buckets      the number of buckets.
+		 * @param bucketMillis the width of a bucket in milliseconds.
+		 */
+		Window(int buckets, long bucketMillis) {
+			this.buckets = buckets;
+			this.bucketMillis = bucketMillis;
+		}
+	}
+
 	/**
-	 * A list of Managers.
+	 * All the ingredients in a restaurant.
 	 */
-	private ArrayList<Manager> managers;
+	private volatile List<Ingredient> ingredients;
 	/**
 	 * The menu.
 	 */
-	private Menu menuItems;
+	private volatile Menu menuItems;
 	/**
 	 * An IngredientManager.
 	 */
 	private IngredientManager ingredientManager;
 	/**
-	 * The ingredient backup file.
+	 * The number of times each MenuItem was ordered, by MenuItem id.
+	 */
+	private volatile LongAdder[] menuUsage;
+	/**
+	 * The amount of each Ingredient used, by Ingredient id.
+	 */
+	private volatile LongAdder[] ingredientUsage;
+	/**
+	 * MenuItems by id, the latest version of each, and their ranking by usage.
+	 */
+	private volatile MenuItem[] menuById;
+	private final UsageRanking menuRanking;
+	/**
+	 * Ingredients by id, and their ranking by usage.
+	 */
+	private volatile Ingredient[] ingredientById;
+	private final UsageRanking ingredientRanking;
+	/**
+	 * Recent orders of each MenuItem, per Window.
+	 */
+	private final EnumMap<Window, RollingWindow> recentMenuUsage = new EnumMap<>(Window.class);
+	/**
+	 * Recent usage of each Ingredient, per Window.
+	 */
+	private final EnumMap<Window, RollingWindow> recentIngredientUsage = new EnumMap<>(Window.class);
+	/**
+	 * The ingredient backup file of earlier versions, read if there is no snapshot yet.
 	 */
 	private final String BACKUP_I = "resources/data/ingredient_stat.json";
 	/**
-	 * The Menu backup file.
+	 * The Menu backup file of earlier versions, read if there is no snapshot yet.
 	 */
 	private final String BACKUP_M = "resources/data/menu_stat.json";
 
@@ -51,59 +121,225 @@ public class Statistics {
 		this.menuItems = menu;
 		this.ingredients = ingredients;
 		this.ingredientManager = ingredientManager;
-		this.managers = new ArrayList<>();
-
-		File backupIngredient = new File(BACKUP_I);
-		File backupMenu = new File(BACKUP_M);
-		try {
-			if (!backupIngredient.createNewFile()) {
-				restoreIngredient(backupIngredient);
-			}
-			if (!backupMenu.createNewFile()) {
-				restoreMenu(backupMenu);
 
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
+		menuUsage = newCounters(menu.getIdCapacity());
+		ingredientUsage = newCounters(ingredients.stream().mapToInt(Ingredient::getId).max().orElse(-1) + 1);
+		menuById = new MenuItem[menuUsage.length];
+		menu.forEach(item -> menuById[item.getId()] = item);
+		menuRanking = new UsageRanking(TOP_K, menuUsage.length);
+		ingredientById = new Ingredient[ingredientUsage.length];
+		ingredients.forEach(ingredient -> ingredientById[ingredient.getId()] = ingredient);
+		ingredientRanking = new UsageRanking(TOP_K, ingredientUsage.length);
+		for (Window window : Window.values()) {
+			recentMenuUsage.put(window, new RollingWindow(menuUsage.length, window.buckets, window.bucketMillis));
+			recentIngredientUsage.put(window,
+					new RollingWindow(ingredientUsage.length, window.buckets, window.bucketMillis));
 		}
 
-		backup();
 		ingredientManager.setStatistics(this);
+	}
+
+	/**
+	 * Creates an array of zeroed counters.
+	 */
+	private static LongAdder[] newCounters(int size) {
+		return growCounters(new LongAdder[0], size);
+	}
 
+	/**
+	 * Copies an array of counters, adding zeroed counters up to a size. The counters themselves are shared, so
+	 * counts added to the old array while copying are not lost.
+	 */
+	private static LongAdder[] growCounters(LongAdder[] counters, int size) {
+		LongAdder[] grown = Arrays.copyOf(counters, Math.max(size, counters.length));
+		for (int i = counters.length; i < grown.length; i++) {
+			grown[i] = new LongAdder();
+		}
+		return grown;
 	}
 
 	/**
-	 * Add manager to keep updated on statistics
+	 * Switches to a new version of the menu, growing the counters to its ids. Called before the menu is used.
 	 *
-	 * @param manager manager to update
+	 * @param menu the new menu.
 	 */
-	public void addManager(Manager manager) {
-		this.managers.add(manager);
+	synchronized void setMenu(Menu menu) {
+		int size = menu.getIdCapacity();
+		menuRanking.grow(size);
+		recentMenuUsage.values().forEach(recent -> recent.grow(size));
+		menuUsage = growCounters(menuUsage, size);
+
+		MenuItem[] byId = Arrays.copyOf(menuById, Math.max(size, menuById.length));
+		menu.forEach(item -> byId[item.getId()] = item);
+		menuById = byId;
+		menuItems = menu;
 	}
 
 	/**
-	 * Stop updating manager on statistics
+	 * Switches to a new list of ingredients, growing the counters to their ids. Called before any new ingredient
+	 * is used.
 	 *
-	 * @param manager a Manager.
+	 * @param ingredients every ingredient.
 	 */
-	public void removeManager(Manager manager) {
-		this.managers.remove(manager);
+	synchronized void setIngredients(List<Ingredient> ingredients) {
+		int size = ingredients.stream().mapToInt(Ingredient::getId).max().orElse(-1) + 1;
+		ingredientRanking.grow(size);
+		recentIngredientUsage.values().forEach(recent -> recent.grow(size));
+		ingredientUsage = growCounters(ingredientUsage, size);
+
+		Ingredient[] byId = Arrays.copyOf(ingredientById, Math.max(size, ingredientById.length));
+		ingredients.forEach(ingredient -> byId[ingredient.getId()] = ingredient);
+		ingredientById = byId;
+		this.ingredients = ingredients;
 	}
 
 	/**
-	 * Prints each ingredient and the current usage of each ingredient.
+	 * Returns every ingredient, most used first.
+	 *
+	 * @return a new list of ingredients.
 	 */
 	public ArrayList<Ingredient> getIngredients() {
-		ingredients.sort(Ingredient::compareTo);
-		return ingredients;
+		ArrayList<Ingredient> all = new ArrayList<>();
+		for (Ingredient ingredient : ingredientById) {
+			if (ingredient == null) continue;
+			ingredient.setUsage((int) getUsage(ingredient));
+			all.add(ingredient);
+		}
+		all.sort((a, b) -> Integer.compare(b.getUsage(), a.getUsage()));
+		return all;
 	}
 
 	/**
-	 * Prints each MenuItem and the current usage of each MenuItem.
+	 * Returns every MenuItem, most ordered first.
+	 *
+	 * @return a new list of MenuItems.
 	 */
 	public ArrayList<MenuItem> getMenuItems() {
-		menuItems.sort(MenuItem::compareTo);
-		return menuItems;
+		ArrayList<MenuItem> all = new ArrayList<>();
+		for (MenuItem item : menuById) {
+			if (item == null) continue;
+			item.setUsage((int) getUsage(item));
+			all.add(item);
+		}
+		all.sort((a, b) -> Integer.compare(b.getUsage(), a.getUsage()));
+		return all;
+	}
+
+	/**
+	 * Returns the k most used ingredients, most used first, with their usage sampled.
+	 *
+	 * @param k the number of ingredients wanted; more than TOP_K lists every ingredient.
+	 * @return a new list of at most k ingredients.
+	 */
+	public ArrayList<Ingredient> getTopIngredients(int k) {
+		if (k > TOP_K) {
+			ArrayList<Ingredient> all = getIngredients();
+			return new ArrayList<>(all.subList(0, Math.min(k, all.size())));
+		}
+
+		ArrayList<Ingredient> top = new ArrayList<>(k);
+		for (int id : ingredientRanking.top(k)) {
+			Ingredient ingredient = ingredientById[id];
+			if (ingredient == null) continue;
+			ingredient.setUsage((int) ingredientUsage[id].sum());
+			top.add(ingredient);
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the k most ordered MenuItems, most ordered first, with their usage sampled.
+	 *
+	 * @param k the number of MenuItems wanted; more than TOP_K lists every MenuItem.
+	 * @return a new list of at most k MenuItems.
+	 */
+	public ArrayList<MenuItem> getTopMenuItems(int k) {
+		if (k > TOP_K) {
+			ArrayList<MenuItem> all = getMenuItems();
+			return new ArrayList<>(all.subList(0, Math.min(k, all.size())));
+		}
+
+		ArrayList<MenuItem> top = new ArrayList<>(k);
+		for (int id : menuRanking.top(k)) {
+			MenuItem item = menuById[id];
+			if (item == null) continue;
+			item.setUsage((int) menuUsage[id].sum());
+			top.add(item);
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the live number of times a MenuItem was ordered.
+	 *
+	 * @param item a MenuItem of the Menu.
+	 * @return the number of times it was ordered.
+	 */
+	public long getUsage(MenuItem item) {
+		return menuUsage[item.getId()].sum();
+	}
+
+	/**
+	 * Returns the live amount of an Ingredient used.
+	 *
+	 * @param ingredient a registered Ingredient.
+	 * @return the amount used.
+	 */
+	public long getUsage(Ingredient ingredient) {
+		return ingredientUsage[ingredient.getId()].sum();
+	}
+
+	/**
+	 * Returns the number of times a MenuItem was ordered within a rolling window.
+	 *
+	 * @param item   a MenuItem of the Menu.
+	 * @param window the window.
+	 * @return the number of times it was ordered.
+	 */
+	public long getUsage(MenuItem item, Window window) {
+		return recentMenuUsage.get(window).sum(item.getId(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the amount of an Ingredient used within a rolling window.
+	 *
+	 * @param ingredient a registered Ingredient.
+	 * @param window     the window.
+	 * @return the amount used.
+	 */
+	public long getUsage(Ingredient ingredient, Window window) {
+		return recentIngredientUsage.get(window).sum(ingredient.getId(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the average hourly usage of an Ingredient over a rolling window.
+	 *
+	 * @param ingredient a registered Ingredient.
+	 * @param window     the window.
+	 * @return the amount used per hour.
+	 */
+	public double getHourlyRate(Ingredient ingredient, Window window) {
+		RollingWindow recent = recentIngredientUsage.get(window);
+		double hours = (double) recent.getSpanMillis() / TimeUnit.HOURS.toMillis(1);
+		return recent.sum(ingredient.getId(), System.currentTimeMillis()) / hours;
+	}
+
+	/**
+	 * Counts uses of a MenuItem.
+	 */
+	private void countMenuItem(int id, long amount) {
+		LongAdder usage = menuUsage[id];
+		usage.add(amount);
+		menuRanking.offer(id, usage.sum());
+	}
+
+	/**
+	 * Counts uses of an Ingredient.
+	 */
+	private void countIngredient(int id, long amount) {
+		LongAdder usage = ingredientUsage[id];
+		usage.add(amount);
+		ingredientRanking.offer(id, usage.sum());
 	}
 
 	/**
@@ -112,95 +348,109 @@ public class Statistics {
 	 * @param order order to account for in the statistics
 	 */
 	public void update(Order order) {
-		order.getItem().use();
-
-		order.getAllIngredients().forEach(Ingredient::updateUsage);
-		managers.forEach(manager -> {
-			manager.updateMenuStat();
-			manager.updateIngredientStat();
+		long now = System.currentTimeMillis();
+		int item = order.getItem().getId();
+		countMenuItem(item, 1);
+		recentMenuUsage.values().forEach(recent -> recent.add(item, 1, now));
+		order.getIngredients().forEach((ingredient, amount) -> {
+			countIngredient(ingredient.getId(), amount);
+			recentIngredientUsage.values().forEach(recent -> recent.add(ingredient.getId(), amount, now));
 		});
-		backup();
-	}
-
-	public void updateManagerInventory() {
-		managers.forEach(Manager::updateInventory);
 	}
 
 	/**
-	 * backup statistics
+	 * Returns the lifetime usage of every MenuItem and Ingredient, for a snapshot.
+	 *
+	 * @return a JSON object with a "menu" and an "ingredients" array, in the format of the old backup files.
 	 */
-	public void backup() {
-		JSONArray data = new JSONArray();
+	JSONObject toJSON() {
+		JSONArray ingredientData = new JSONArray();
 		for (Ingredient item : ingredients) {
 			JSONObject obj = new JSONObject();
 			obj.put("displayName", item.getDisplayName());
-			obj.put("usage", item.getUsage());
-			data.add(obj);
-		}
-
-		try (FileWriter file = new FileWriter(BACKUP_I)) {
-			file.write(data.toJSONString());
-		} catch (Exception ignored) {
+			obj.put("usage", getUsage(item));
+			ingredientData.add(obj);
 		}
 
-
-		data.clear();
+		JSONArray menuData = new JSONArray();
 		for (MenuItem item : menuItems) {
 			JSONObject obj = new JSONObject();
 			obj.put("name", item.getName());
-			obj.put("usage", item.getUsage());
-			data.add(obj);
+			obj.put("usage", getUsage(item));
+			menuData.add(obj);
 		}
 
-		try (FileWriter file = new FileWriter(BACKUP_M, false)) {
-			file.write(data.toJSONString());
-		} catch (Exception ignored) {
+		JSONObject data = new JSONObject();
+		data.put("ingredients", ingredientData);
+		data.put("menu", menuData);
+		return data;
+	}
+
+	/**
+	 * Restores the lifetime usage from a snapshot.
+	 *
+	 * @param data a JSON object returned by toJSON().
+	 */
+	void restore(JSONObject data) {
+		restoreIngredient((JSONArray) data.get("ingredients"));
+		restoreMenu((JSONArray) data.get("menu"));
+	}
+
+	/**
+	 * Restores the lifetime usage from the backup files of earlier versions, if they exist.
+	 */
+	void restoreLegacy() {
+		JSONParser parser = new JSONParser();
+		for (String backup : new String[]{BACKUP_I, BACKUP_M}) {
+			File file = new File(backup);
+			if (!file.exists()) continue;
+
+			try (FileReader reader = new FileReader(file)) {
+				JSONArray data = (JSONArray) parser.parse(reader);
+				if (backup.equals(BACKUP_I)) restoreIngredient(data);
+				else restoreMenu(data);
+			} catch (ParseException | IOException | ClassCastException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 
 	/**
 	 * Restore ingredient statistics from backup
 	 *
-	 * @param file backup to restore from
+	 * @param data backup to restore from
 	 */
-	private void restoreIngredient(File file) {
-		try {
-			JSONParser parser = new JSONParser();
-			Object obj = parser.parse(new FileReader(file));
-			JSONArray data = (JSONArray) obj;
+	private void restoreIngredient(JSONArray data) {
+		if (data == null) return;
 
-			for (Object item : data) {
-				JSONObject ingredientObject = (JSONObject) item;
+		for (Object item : data) {
+			JSONObject ingredientObject = (JSONObject) item;
 
-				String displayName = (String) ingredientObject.get("displayName");
-				int usage = ((Long) ingredientObject.get("usage")).intValue();
-				ingredientManager.getIngredient(displayName).setUsage(usage);
+			String displayName = (String) ingredientObject.get("displayName");
+			long usage = (Long) ingredientObject.get("usage");
+			try {
+				countIngredient(ingredientManager.getIngredient(displayName).getId(), usage);
+			} catch (InvalidIngredientException e) {
+				System.err.println(e.getMessage());
 			}
-		} catch (ParseException | IOException e) {
-			e.printStackTrace();
 		}
 	}
 
 	/**
 	 * Restore menu statistics from backup
 	 *
-	 * @param file backup to restore from
+	 * @param data backup to restore from
 	 */
-	private void restoreMenu(File file) {
-		try {
-			JSONParser parser = new JSONParser();
-			Object obj = parser.parse(new FileReader(file));
-			JSONArray data = (JSONArray) obj;
+	private void restoreMenu(JSONArray data) {
+		if (data == null) return;
 
-			for (Object item : data) {
-				JSONObject ingredientObject = (JSONObject) item;
+		for (Object item : data) {
+			JSONObject menuObject = (JSONObject) item;
 
-				String name = (String) ingredientObject.get("name");
-				int usage = ((Long) ingredientObject.get("usage")).intValue();
-				menuItems.get(name).setUsage(usage);
-			}
-		} catch (ParseException | IOException e) {
-			e.printStackTrace();
+			String name = (String) menuObject.get("name");
+			long usage = (Long) menuObject.get("usage");
+			MenuItem menuItem = menuItems.get(name);
+			if (menuItem != null) countMenuItem(menuItem.getId(), usage);
 		}
 	}
 }
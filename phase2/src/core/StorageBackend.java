@@ -0,0 +1,179 @@
+package core;
+
+import org.json.simple.JSONArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Where a Restaurant keeps its state, its payments and its accounts.
+ * <p>
+ * The state is the inventory, statistics and live orders. They are stored together as one snapshot plus a
+ * journal of the records made since, so that they are always consistent with each other (see Persistence and
+ * StateJournal). Payments are stored as records partitioned by business date, each date with a rollup of its
+ * revenue (see PaymentLedger). Records and snapshots are JSON strings, which backends store as they are.
+ * <p>
+ * Backends are chosen with the "storage" key of settings.json:
+ * <ul>
+ * <li>"memory": MemoryStorage, which keeps nothing across runs; for benchmarks and tests.</li>
+ * <li>"json": JsonFileStorage, JSON files under resources/data; the default.</li>
+ * <li>"database": DatabaseStorage, an embedded database under resources/data.</li>
+ * </ul>
+ * Writes are made by the StorageWriter thread, reads mostly on startup; implementations must still be
+ * thread-safe, since a date's payments may be read while others are written.
+ */
+public interface StorageBackend {
+	/**
+	 * Creates the backend named in the settings.
+	 *
+	 * @param type     "memory", "json" or "database"; null for the default, "json".
+	 * @param data     the directory of the restaurant's data, e.g. resources/data.
+	 * @param accounts the accounts file to start from, e.g. resources/settings/accounts.json.
+	 * @return the backend.
+	 * @throws IllegalArgumentException if the type is unknown.
+	 */
+	static StorageBackend create(String type, File data, File accounts) {
+		if (type == null) type = "json";
+		switch (type.toLowerCase()) {
+			case "memory":
+				return new MemoryStorage(accounts);
+			case "json":
+				return new JsonFileStorage(data, accounts);
+			case "database":
+				return new DatabaseStorage(data, accounts);
+			default:
+				throw new IllegalArgumentException("Unknown storage " + type);
+		}
+	}
+
+	/**
+	 * Reads the latest snapshot of the state that is intact. If an earlier snapshot is read instead, the journal
+	 * must replay the records made since that one.
+	 *
+	 * @return the snapshot, or null if none was written or none can be read intact.
+	 * @throws IOException if the snapshot cannot be read.
+	 */
+	String readSnapshot() throws IOException;
+
+	/**
+	 * Replaces the snapshot of the state. The previous snapshot must remain if this fails.
+	 *
+	 * @param snapshot the new snapshot.
+	 * @throws IOException if the snapshot cannot be written.
+	 */
+	void writeSnapshot(String snapshot) throws IOException;
+
+	/**
+	 * Appends records to the journal.
+	 *
+	 * @param records the records, oldest first.
+	 * @throws IOException if the records cannot be appended.
+	 */
+	void appendJournal(List<String> records) throws IOException;
+
+	/**
+	 * Moves every record of the journal to the rotated journal, behind any rotated records not yet dropped.
+	 * Called before a snapshot that covers them is written.
+	 *
+	 * @throws IOException if the journal cannot be rotated.
+	 */
+	void rotateJournal() throws IOException;
+
+	/**
+	 * Drops the rotated journal, once a snapshot covering it has been written.
+	 *
+	 * @throws IOException if the rotated journal cannot be dropped.
+	 */
+	void dropRotatedJournal() throws IOException;
+
+	/**
+	 * Reads every record of the rotated journal, then of the journal, oldest first. A record may be incomplete
+	 * if the previous run stopped while appending it.
+	 *
+	 * @param record called with each record.
+	 * @throws IOException if the journal cannot be read.
+	 */
+	void replayJournal(Consumer<String> record) throws IOException;
+
+	/**
+	 * Appends a payment record to a business date.
+	 *
+	 * @param date   the business date.
+	 * @param record the payment.
+	 * @throws IOException if the payment cannot be appended.
+	 */
+	void appendPayment(LocalDate date, String record) throws IOException;
+
+	/**
+	 * Reads every payment record of a business date, oldest first.
+	 *
+	 * @param date   the business date.
+	 * @param record called with each payment.
+	 * @throws IOException if the payments cannot be read.
+	 */
+	void readPayments(LocalDate date, Consumer<String> record) throws IOException;
+
+	/**
+	 * Returns how far the payments of a business date extend. It grows with every payment appended, so a rollup
+	 * that recorded it can tell whether it covers every payment.
+	 *
+	 * @param date the business date.
+	 * @return the extent, 0 if no payments were made that date.
+	 * @throws IOException if the payments cannot be read.
+	 */
+	long getPaymentsExtent(LocalDate date) throws IOException;
+
+	/**
+	 * Returns the business dates on which payments were made.
+	 *
+	 * @return a new list of dates, in no particular order.
+	 * @throws IOException if the payments cannot be listed.
+	 */
+	List<LocalDate> getPaymentDates() throws IOException;
+
+	/**
+	 * Reads the revenue rollup of a business date.
+	 *
+	 * @param date the business date.
+	 * @return the rollup, or null if none was written.
+	 * @throws IOException if the rollup cannot be read.
+	 */
+	String readRollup(LocalDate date) throws IOException;
+
+	/**
+	 * Replaces the revenue rollup of a business date. The previous rollup must remain if this fails.
+	 *
+	 * @param date   the business date.
+	 * @param rollup the rollup.
+	 * @throws IOException if the rollup cannot be written.
+	 */
+	void writeRollup(LocalDate date, String rollup) throws IOException;
+
+	/**
+	 * Reads the accounts that can log in, in the format of accounts.json.
+	 *
+	 * @return the accounts, by type of employee.
+	 * @throws IOException if the accounts cannot be read.
+	 */
+	JSONArray readAccounts() throws IOException;
+
+	/**
+	 * Makes everything written so far durable, e.g. by forcing files to disk. Called by the StorageWriter after
+	 * each group of writes. Does nothing by default.
+	 *
+	 * @throws IOException if the backend cannot be synced.
+	 */
+	default void sync() throws IOException {
+	}
+
+	/**
+	 * Releases the backend, once everything has been stored. Does nothing by default.
+	 *
+	 * @throws IOException if the backend cannot be released.
+	 */
+	default void close() throws IOException {
+	}
+}
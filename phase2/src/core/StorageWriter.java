@@ -0,0 +1,163 @@
+package core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Performs every write of a Restaurant on a background thread, so that neither events nor screens wait on a
+ * disk.
+ * <p>
+ * Writes are queued and performed in the order they were submitted, in groups: the writer waits up to the
+ * group-commit interval for writes to pile up, performs them all, then syncs the StorageBackend once, so a
+ * burst of orders costs one sync instead of one per write. A write submitted with a key replaces any queued
+ * write with the same key and moves to the back of the queue; this coalesces repeated rewrites of the same file,
+ * such as a rollup or requests.txt, into one. flush() waits until everything submitted before it is written and
+ * synced.
+ */
+public class StorageWriter {
+	/**
+	 * The default group-commit interval, in milliseconds.
+	 */
+	public static final long DEFAULT_INTERVAL = 50;
+
+	/**
+	 * A write to perform.
+	 */
+	interface Write {
+		void run() throws IOException;
+	}
+
+	private final StorageBackend storage; // Synced after every group of writes
+	private final long interval; // Longest time a write waits for others to join its group, in millis
+	private final LinkedHashMap<Object, Write> queue = new LinkedHashMap<>(); // Queued writes, by key
+	private final Thread thread; // Performs the writes
+	private long submitted = 0; // Writes submitted so far; unkeyed writes are keyed by this
+	private long completed = 0; // Writes submitted so far that have been written and synced
+	private long flushTarget = 0; // Writes that a flush() is waiting on; they skip the interval
+	private boolean closed = false; // If no more writes will be submitted
+
+	/**
+	 * Creates a StorageWriter and starts its thread.
+	 *
+	 * @param storage  the storage to sync after every group of writes.
+	 * @param interval the group-commit interval in milliseconds; 0 to write and sync as soon as possible.
+	 */
+	public StorageWriter(StorageBackend storage, long interval) {
+		this.storage = storage;
+		this.interval = Math.max(0, interval);
+		this.thread = new Thread(this::run, "storage-writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a write.
+	 *
+	 * @param write the write.
+	 */
+	synchronized void submit(Write write) {
+		submit(submitted, write);
+	}
+
+	/**
+	 * Queues a write, replacing the queued write with the same key if there is one.
+	 *
+	 * @param key   identifies what is written, e.g. a file.
+	 * @param write the write.
+	 */
+	synchronized void submit(Object key, Write write) {
+		if (closed) {
+			System.err.println("Storage closed, dropping a write of " + key);
+			return;
+		}
+
+		submitted++;
+		queue.remove(key);
+		queue.put(key, write);
+		notifyAll();
+	}
+
+	/**
+	 * Waits until every write submitted so far has been written and synced.
+	 */
+	public synchronized void flush() {
+		long target = submitted;
+		flushTarget = Math.max(flushTarget, target);
+		notifyAll();
+
+		boolean interrupted = false;
+		while (completed < target && thread.isAlive()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Flushes every write and stops the writer. Writes submitted after this are dropped.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		flush();
+	}
+
+	/**
+	 * Performs groups of writes until closed.
+	 */
+	private void run() {
+		try {
+			long lastSync = 0;
+			while (true) {
+				ArrayList<Write> group;
+				long drained;
+				synchronized (this) {
+					while (queue.isEmpty() && !closed) {
+						wait();
+					}
+					// Let writes pile up until the interval has passed, unless someone is waiting on them
+					long now;
+					while (!closed && flushTarget <= completed
+							&& (now = System.currentTimeMillis()) < lastSync + interval) {
+						wait(lastSync + interval - now);
+					}
+					if (queue.isEmpty() && closed) return;
+
+					group = new ArrayList<>(queue.values());
+					queue.clear();
+					drained = submitted;
+				}
+
+				for (Write write : group) {
+					try {
+						write.run();
+					} catch (IOException | RuntimeException e) {
+						System.err.println("Unable to write: " + e.getMessage());
+					}
+				}
+				try {
+					storage.sync();
+				} catch (IOException e) {
+					System.err.println("Unable to sync storage: " + e.getMessage());
+				}
+				lastSync = System.currentTimeMillis();
+
+				synchronized (this) {
+					completed = drained;
+					notifyAll();
+				}
+			}
+		} catch (InterruptedException ignored) {
+			// Stopped
+		} finally {
+			synchronized (this) {
+				notifyAll(); // Nothing more will be written; release any flush()
+			}
+		}
+	}
+}
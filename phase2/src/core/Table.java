@@ -3,9 +3,17 @@ package core;
 import visual.gui.Server;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * Represents a table at a restaurant.
+ * <p>
+ * The table keeps a running subtotal of each seat and of the whole table in whole cents, updated as orders are
+ * added to and removed from its bill, so a bill never re-adds prices and never drifts.
+ * <p>
+ * Orders are added and removed by events, on the event thread, while the screens read the table on the JavaFX
+ * thread, so every method locks the table and lists of orders are returned as copies.
  */
 public class Table implements Comparable {
     private final int tableNumber; // the table number
@@ -18,13 +26,16 @@ public class Table implements Comparable {
 	private Server server;
 	private double tablePayment;
 
-	private boolean occupied = false;
+	private volatile boolean occupied = false;
+	private Consumer<Table> onChange; // Notified whenever the table is occupied or cleared
 
 
 	/**
 	 * The first index refers to the seat number and the second for that seat's orders
 	 */
 	private final ArrayList<ArrayList<Order>> seatOrders;
+	private final long[] seatSubtotals; // The price of each seat's orders in cents, by seat number - 1
+	private long subtotal; // The price of all the orders in cents
 
 	/**
 	 * Creates a table with a particular table number and number of seats.
@@ -41,6 +52,7 @@ public class Table implements Comparable {
         for (int i = 0; i < numberOfSeats; i++) {
             seatOrders.add(new ArrayList<>());
         }
+        seatSubtotals = new long[numberOfSeats];
     }
 
 	public int getNumberOfSeats(){
@@ -48,17 +60,26 @@ public class Table implements Comparable {
 	}
 
 	//TODO: find better way to do this....
-	public void setServer(Server server){
+	public synchronized void setServer(Server server){
 		if (this.server == null){
 			this.server = server;
 		}
 
 	}
-	public Server getServer(){
+	public synchronized Server getServer(){
 		return this.server;
 	}
 
-	public int getCurrentCapacity(){
+	/**
+	 * Sets the listener notified whenever the table is occupied or cleared.
+	 *
+	 * @param onChange the listener, or null for none.
+	 */
+	void setOnChange(Consumer<Table> onChange) {
+		this.onChange = onChange;
+	}
+
+	public synchronized int getCurrentCapacity(){
 		return currentCapacity;
 	}
 	/**
@@ -70,7 +91,17 @@ public class Table implements Comparable {
 		return tableNumber;
 	}
 
-	public void addSeat(){
+	/**
+	 * Seats a party at the table, occupying it until it is cleared.
+	 *
+	 * @param partySize the number of people in the party; a larger party than the table seats counts as full.
+	 */
+	public synchronized void seat(int partySize) {
+		currentCapacity = Math.min(partySize, tableCapacity);
+		setOccupied(true);
+	}
+
+	public synchronized void addSeat(){
 		while (currentCapacity < tableCapacity)
 		currentCapacity+=1;
 	}
@@ -78,9 +109,21 @@ public class Table implements Comparable {
 	/**
 	 * Clears the orders of a Table.
 	 */
-	public void clearOrders() {
+	public synchronized void clearOrders() {
 		seatOrders.forEach(ArrayList::clear);
-		occupied = false;
+		Arrays.fill(seatSubtotals, 0);
+		subtotal = 0;
+		currentCapacity = 0;
+		setOccupied(false);
+	}
+
+	/**
+	 * Occupies or clears the table, notifying the listener if that changes it.
+	 */
+	private void setOccupied(boolean occupied) {
+		if (this.occupied == occupied) return;
+		this.occupied = occupied;
+		if (onChange != null) onChange.accept(this);
 	}
 
     /**
@@ -88,8 +131,10 @@ public class Table implements Comparable {
      *
      * @param seat the seat number whose orders should be removed.
      */
-    public void clearOrders(int seat) {
+    public synchronized void clearOrders(int seat) {
         seatOrders.get(seat - 1).clear();
+        subtotal -= seatSubtotals[seat - 1];
+        seatSubtotals[seat - 1] = 0;
     }
 
     /**
@@ -97,9 +142,11 @@ public class Table implements Comparable {
      *
      * @param order the order that is being added to the bill.
      */
-    public void updateBill(Order order) {
+    public synchronized void updateBill(Order order) {
         seatOrders.get(order.getSeatNumber() - 1).add(order);
-        occupied = true;
+        seatSubtotals[order.getSeatNumber() - 1] += order.getPriceInCents();
+        subtotal += order.getPriceInCents();
+        setOccupied(true);
     }
 
     /**
@@ -107,10 +154,11 @@ public class Table implements Comparable {
      *
      * @param order the order that is being removed from the bill.
      */
-    public void removeOrder(Order order) {
+    public synchronized void removeOrder(Order order) {
         ArrayList<Order> orders = seatOrders.get(order.getSeatNumber() - 1);
-        if (orders.contains(order)) {
-            orders.remove(order);
+        if (orders.remove(order)) {
+            seatSubtotals[order.getSeatNumber() - 1] -= order.getPriceInCents();
+            subtotal -= order.getPriceInCents();
         }
     }
 
@@ -120,21 +168,79 @@ public class Table implements Comparable {
      * @param order an order.
      * @return true if a table has the order, false otherwise.
      */
-    public boolean hasOrder(Order order) {
+    public synchronized boolean hasOrder(Order order) {
         return seatOrders.get(order.getSeatNumber() - 1).contains(order);
     }
 
+    /**
+     * Returns whether any order at the table is still to be delivered.
+     *
+     * @return true if an order is ordered, received or cooked.
+     */
+    public synchronized boolean hasUndeliveredOrders() {
+        for (ArrayList<Order> orders : seatOrders) {
+            for (Order order : orders) {
+                if (!order.isDelivered()) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether any order of a seat is still to be delivered.
+     *
+     * @param seat the seat number.
+     * @return true if an order of the seat is ordered, received or cooked.
+     */
+    public synchronized boolean hasUndeliveredOrders(int seat) {
+        if (seat < 1 || seat > seatOrders.size()) return false;
+        for (Order order : seatOrders.get(seat - 1)) {
+            if (!order.isDelivered()) return true;
+        }
+        return false;
+    }
+
     /**
      * Gets a list of all the orders at a table.
      *
      * @return a list containing all of the table's orders.
      */
-    public ArrayList<Order> getOrders() {
+    public synchronized ArrayList<Order> getOrders() {
         ArrayList<Order> all = new ArrayList<>();
         this.seatOrders.forEach(all::addAll);
         return all;
     }
 
+    /**
+     * Gets the orders of a seat.
+     *
+     * @param seat the seat number.
+     * @return a new list of the seat's orders, in the order they were added; empty if there is no such seat.
+     */
+    public synchronized ArrayList<Order> getOrders(int seat) {
+        if (seat < 1 || seat > seatOrders.size()) return new ArrayList<>();
+        return new ArrayList<>(seatOrders.get(seat - 1));
+    }
+
+    /**
+     * Gets the price of all the orders at the table.
+     *
+     * @return the subtotal, in cents.
+     */
+    public synchronized long getSubtotal() {
+        return subtotal;
+    }
+
+    /**
+     * Gets the price of the orders of a seat.
+     *
+     * @param seat the seat number.
+     * @return the subtotal, in cents; 0 if there is no such seat.
+     */
+    public synchronized long getSubtotal(int seat) {
+        return seat < 1 || seat > seatSubtotals.length ? 0 : seatSubtotals[seat - 1];
+    }
+
     public boolean isOccupied(){
     	return occupied;
 	}
@@ -149,15 +255,15 @@ public class Table implements Comparable {
 		return "Table (" + this.getTableNumber() + ")";
 	}
 
-	public void clearPayment(){
+	public synchronized void clearPayment(){
 		this.tablePayment = 0;
 	}
 
-	public void setTablePayment(double payment){
+	public synchronized void setTablePayment(double payment){
 		this.tablePayment = payment;
 	}
 
-	public double getTablePayment(){
+	public synchronized double getTablePayment(){
 		return this.tablePayment;
 	}
 
@@ -0,0 +1,75 @@
+package core;
+
+import util.Log;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the re-order requests in sync with the inventory.
+ * <p>
+ * Ingredients report themselves as changed whenever their amount in stock changes; only those ingredients
+ * are re-evaluated against their thresholds, and requests.txt is rewritten at most once per flush, and only
+ * if the re-order set actually changed.
+ */
+class ThresholdWatcher {
+	private final IngredientManager ingredientManager; // Owner of the re-order set
+	private final Restaurant restaurant; // Used for logging
+	private final Set<Ingredient> changed; // Ingredients whose amount changed since the last flush
+	private boolean written = false; // If requests.txt has been written since startup
+
+	/**
+	 * Creates a ThresholdWatcher. Every ingredient starts as changed, so the first flush checks them all.
+	 *
+	 * @param ingredientManager the IngredientManager holding the re-order set.
+	 * @param restaurant        the restaurant, used for logging.
+	 */
+	ThresholdWatcher(IngredientManager ingredientManager, Restaurant restaurant) {
+		this.ingredientManager = ingredientManager;
+		this.restaurant = restaurant;
+		this.changed = ConcurrentHashMap.newKeySet();
+
+		changed.addAll(ingredientManager.getIngredients());
+	}
+
+	/**
+	 * Marks an ingredient as needing to be re-evaluated on the next flush.
+	 *
+	 * @param ingredient the ingredient whose amount changed.
+	 */
+	void markChanged(Ingredient ingredient) {
+		changed.add(ingredient);
+	}
+
+	/**
+	 * Re-evaluates every changed ingredient against its threshold, and rewrites requests.txt once if the
+	 * re-order set changed.
+	 */
+	synchronized void flush() {
+		boolean modified = false;
+
+		Iterator<Ingredient> iterator = changed.iterator();
+		while (iterator.hasNext()) {
+			Ingredient ingredient = iterator.next();
+			iterator.remove();
+
+			if (ingredient.getAmount() < ingredient.getThreshold()) {
+				if (!ingredientManager.isInReorder(ingredient)) {
+					int amount = ingredientManager.reorderIngredient(ingredient);
+					Log.log(restaurant, String.format("Now requesting %s units of %s",
+							amount, ingredient.getDisplayName()));
+					modified = true;
+				}
+			} else if (ingredientManager.isInReorder(ingredient)) {
+				ingredientManager.removeReorderIngredient(ingredient);
+				modified = true;
+			}
+		}
+
+		if (modified || !written) {
+			ingredientManager.updateRequestsFile();
+			written = true;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the K most counted of a set of dense integer keys, whose counts only grow, so they can be read in
+ * O(K log K) however many keys there are.
+ * <p>
+ * The counts themselves are kept by the caller; a UsageRanking is offered a key's count each time it grows. The
+ * top keys are held in a K-sized min-heap, with an index from key to heap position, so the least counted of them
+ * is at the root. A key outside the heap only gets in by beating the root, and a key in the heap sifts down by
+ * O(log K) swaps as its count grows. Keys that cannot beat the root, which is most of them once the heap is full,
+ * are turned away by one volatile read without taking the lock.
+ * <p>
+ * Because counts only grow, every key outside the heap has a count no higher than the root's, so the heap holds
+ * exactly the top K keys, ties broken arbitrarily.
+ */
+class UsageRanking {
+	private final int capacity; // K
+	private final int[] heap; // Keys, least counted at the root
+	private final long[] heapCounts; // heapCounts[i] is the count of heap[i] when it was last offered
+	private int size; // The number of keys in the heap
+	private int[] position; // position[key] is the index of key in heap, or -1 if it is not in it
+	private volatile long minimum = -1; // The count at the root once the heap is full; -1 until then
+
+	/**
+	 * Creates a UsageRanking where no key has been counted.
+	 *
+	 * @param capacity the number of top keys to keep, K.
+	 * @param keys     the number of keys, 0 to keys - 1.
+	 */
+	UsageRanking(int capacity, int keys) {
+		this.capacity = capacity;
+		heap = new int[capacity];
+		heapCounts = new long[capacity];
+		position = new int[keys];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Returns the number of top keys kept.
+	 *
+	 * @return K.
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Ranks a key by its new count.
+	 *
+	 * @param key   the key.
+	 * @param count the key's count, after it grew.
+	 */
+	void offer(int key, long count) {
+		if (count <= minimum) return; // Can't beat the root; if the key is in the heap, its count is already there
+
+		synchronized (this) {
+			int i = position[key];
+			if (i >= 0) {
+				if (count <= heapCounts[i]) return; // A later count was offered first
+				heapCounts[i] = count;
+				siftDown(i);
+			} else if (size < capacity) {
+				i = size++;
+				heap[i] = key;
+				heapCounts[i] = count;
+				position[key] = i;
+				siftUp(i);
+			} else if (count > heapCounts[0]) {
+				position[heap[0]] = -1;
+				heap[0] = key;
+				heapCounts[0] = count;
+				position[key] = 0;
+				siftDown(0);
+			}
+			if (size == capacity) minimum = heapCounts[0];
+		}
+	}
+
+	/**
+	 * Returns the k most counted keys, most first.
+	 *
+	 * @param k the number of keys wanted, at most K.
+	 * @return a new array of at most k keys.
+	 */
+	int[] top(int k) {
+		int[] keys;
+		long[] counts;
+		synchronized (this) {
+			keys = Arrays.copyOf(heap, size);
+			counts = Arrays.copyOf(heapCounts, size);
+		}
+		Integer[] order = new Integer[keys.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+		int[] top = new int[Math.min(k, order.length)];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = keys[order[i]];
+		}
+		return top;
+	}
+
+	/**
+	 * Makes room for more keys, which start uncounted.
+	 *
+	 * @param keys the new number of keys; nothing changes if there are already as many.
+	 */
+	synchronized void grow(int keys) {
+		int from = position.length;
+		if (keys <= from) return;
+
+		position = Arrays.copyOf(position, keys);
+		Arrays.fill(position, from, keys, -1);
+	}
+
+	/**
+	 * Moves the key at an index towards the root while it is counted less than its parent.
+	 */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapCounts[parent] <= heapCounts[i]) return;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Moves the key at an index away from the root while it is counted more than a child.
+	 */
+	private void siftDown(int i) {
+		while (true) {
+			int least = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && heapCounts[left] < heapCounts[least]) least = left;
+			if (right < size && heapCounts[right] < heapCounts[least]) least = right;
+			if (least == i) return;
+			swap(i, least);
+			i = least;
+		}
+	}
+
+	/**
+	 * Swaps two heap entries and their positions.
+	 */
+	private void swap(int i, int j) {
+		int key = heap[i];
+		long count = heapCounts[i];
+		heap[i] = heap[j];
+		heapCounts[i] = heapCounts[j];
+		heap[j] = key;
+		heapCounts[j] = count;
+		position[heap[i]] = i;
+		position[heap[j]] = j;
+	}
+}
@@ -4,10 +4,6 @@ import core.Order;
 import core.Restaurant;
 import core.Table;
 import visual.gui.Cook;
-import visual.gui.Employee;
-import visual.gui.Manager;
-
-import java.util.ArrayList;
 
 /**
  * A class representing a CancelEvent.
@@ -76,6 +72,10 @@ public class CancelEvent extends Event {
 	 */
 	@Override
 	public void execute() {
+		if (!order.isCooked()) {
+			// Ingredients of an uncooked order are still only reserved, give them back
+			restaurant.getIngredientManager().release(order);
+		}
 		order.setProgress(Order.ORDER_CANCELLED);
 		Cook cook = order.getCook();
 
@@ -85,9 +85,7 @@ public class CancelEvent extends Event {
                     ", " + description : ""));
 			order.setCook(null);
 		}else{
-			ArrayList<Employee> employees= restaurant.getAllEmployees("Cook");
-			employees.forEach(employee -> ((Cook)employee).refreshAssigned());
-
+			restaurant.getKitchenQueue().remove(order);
 		}
 
 
@@ -95,10 +93,6 @@ public class CancelEvent extends Event {
 		if (table.hasOrder(order)) {
 			table.removeOrder(order);
 		}
-
-
-		ArrayList<Employee> employees= restaurant.getAllEmployees("Manager");
-		employees.forEach(employee -> ((Manager)employee).refreshOrders());
 	}
 
 	/**
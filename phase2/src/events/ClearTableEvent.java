@@ -18,7 +18,7 @@ public class ClearTableEvent extends Event {
 	 * @param server The Server Clearing the table.
 	 * @param res    a Restaurant.
 	 */
-	private ClearTableEvent(Table table, Server server, Restaurant res) {
+	public ClearTableEvent(Table table, Server server, Restaurant res) {
 		super(TYPE.CLEARTABLE, res);
 		this.server = server;
 		this.table = table;
@@ -26,13 +26,15 @@ public class ClearTableEvent extends Event {
 
 	/**
 	 * Executes a ClearTableEvent.
+	 *
+	 * @throws IllegalStateException if the table still has orders to be delivered; it is then left as it is.
 	 */
 	@Override
 	public void execute() {
+		if (!restaurant.clearTable(table)) {
+			throw new IllegalStateException(table + " still has orders that have not been delivered");
+		}
 		server.log(String.format("Cleared %s", table));
-		this.table.clearOrders();
-		this.table.clearPayment();
-		//TODO: anything else to clear?
 	}
 
 	/**
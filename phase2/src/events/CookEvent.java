@@ -2,12 +2,7 @@ package events;
 
 import core.Order;
 import core.Restaurant;
-import util.InvalidIngredientException;
 import visual.gui.Cook;
-import visual.gui.Employee;
-import visual.gui.Manager;
-
-import java.util.ArrayList;
 
 /**
  * A class representing a CookEvent.
@@ -71,31 +66,18 @@ public class CookEvent extends Event {
 			System.exit(1);
 		}
 
-		try {
-			boolean valid = this.restaurant.checkIngredients(order);
-			if (!valid) {
-				System.err.println("Not enough ingredients to cook order " + order.toString());
-				new CancelEvent(restaurant, order, CancelEvent.REASON.OUT_OF_INGREDIENTS, null).execute();
-			}
-		} catch (InvalidIngredientException e) {
-			e.printStackTrace();
+		if (!this.restaurant.getIngredientManager().cook(order)) {
+			System.err.println("Not enough ingredients reserved to cook order " + order.toString());
+			new CancelEvent(restaurant, order, CancelEvent.REASON.OUT_OF_INGREDIENTS, null).execute();
+			return;
 		}
 
 		this.order.setProgress(Order.ORDER_COOKED);
-		this.restaurant.updateInventory(order);
-		this.restaurant.checkThresholds();
 
 		this.cook.setAvailable(true);
 		cook.log(String.format("Order %s cooked and ready to bus", order));
-		order.getServer().log(String.format("Notified to deliver order %s", order));
-
-
-		ArrayList<Employee> employees= restaurant.getAllEmployees("Cook");
-		employees.forEach(employee -> ((Cook) employee).refreshAssigned());
-		ArrayList<Employee> managers= restaurant.getAllEmployees("Manager");
-		managers.forEach(manager -> ((Manager)manager).refreshView());
-		order.getServer().refreshView();
-		order.getServer().refreshOrders();
-
+		if (order.getServer() != null) {
+			order.getServer().log(String.format("Notified to deliver order %s", order));
+		}
 	}
 }
@@ -3,7 +3,6 @@ package events;
 import core.Order;
 import core.Restaurant;
 import util.Log;
-import visual.gui.Manager;
 import visual.gui.Server;
 
 /**
@@ -46,11 +45,5 @@ public class DeliverEvent extends Event {
 		Log.logID(server, server.getId(), String.format("Order %s delivered to Table (%d)", order,
 				order.getTable().getTableNumber()));
 		server.setIsAvailable(true);
-
-		restaurant.getAllEmployees("Manager").forEach(manager->{
-			((Manager)manager).refreshOrders();
-			((Manager)manager).refreshView();
-		});
-
 	}
 }
@@ -23,7 +23,8 @@ public abstract class Event {
 		LOG_INVENTORY("LOGINV"),
 		STATISTICS("STATISTICS"),
 		GET_BILL("GETBILL"),
-		CLEARTABLE("CLEARTABLE");
+		CLEARTABLE("CLEARTABLE"),
+		SEAT("SEAT");
 
 		String type;
 
@@ -0,0 +1,159 @@
+package events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Applies events to the restaurant on a single consumer thread, and tells subscribers about them afterwards.
+ * <p>
+ * Published events go into a bounded ring buffer, so publishing is cheap and a burst of events from many
+ * terminals is applied strictly in order without the terminals contending for the core state. After the
+ * consumer has drained the buffer, every subscriber is handed the whole batch of applied events on its own
+ * executor (e.g. the JavaFX thread), so a slow screen never holds up order processing.
+ */
+public class EventBus {
+	public static final int DEFAULT_CAPACITY = 1024; // Default size of the ring buffer
+
+	/**
+	 * An event waiting in the ring buffer, with the future completed once it has been applied.
+	 */
+	private static class Pending {
+		final Event event;
+		final CompletableFuture<Event> done;
+
+		Pending(Event event) {
+			this.event = event;
+			this.done = new CompletableFuture<>();
+		}
+	}
+
+	/**
+	 * A listener and the executor it must be notified on.
+	 */
+	private static class Subscriber {
+		final Consumer<List<Event>> listener;
+		final Executor executor;
+
+		Subscriber(Consumer<List<Event>> listener, Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+
+	private final ArrayBlockingQueue<Pending> buffer; // The ring buffer of events waiting to be applied
+	private final CopyOnWriteArrayList<Subscriber> subscribers; // Notified after every batch
+	private final Thread consumer; // Applies the events
+
+	/**
+	 * Creates an EventBus with the default capacity and starts its consumer thread.
+	 */
+	public EventBus() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an EventBus and starts its consumer thread.
+	 *
+	 * @param capacity the maximum number of events waiting to be applied.
+	 */
+	public EventBus(int capacity) {
+		buffer = new ArrayBlockingQueue<>(capacity);
+		subscribers = new CopyOnWriteArrayList<>();
+		consumer = new Thread(this::consume, "event-bus");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Publishes an event. If the buffer is full, waits until there is room.
+	 *
+	 * @param event the event to apply.
+	 * @return a future completed with the event once it has been applied.
+	 */
+	public CompletableFuture<Event> publish(Event event) {
+		Pending pending = new Pending(event);
+		if (Thread.currentThread() == consumer) {
+			// Published from inside another event; apply it right away instead of waiting on ourselves
+			apply(pending);
+			return pending.done;
+		}
+
+		try {
+			buffer.put(pending);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pending.done.completeExceptionally(e);
+		}
+		return pending.done;
+	}
+
+	/**
+	 * Subscribes a listener to every batch of applied events.
+	 *
+	 * @param listener the listener, given the events of a batch in the order they were applied.
+	 * @param executor the executor the listener is called on.
+	 */
+	public void subscribe(Consumer<List<Event>> listener, Executor executor) {
+		subscribers.add(new Subscriber(listener, executor));
+	}
+
+	/**
+	 * Unsubscribes a listener.
+	 *
+	 * @param listener a listener previously passed to subscribe.
+	 */
+	public void unsubscribe(Consumer<List<Event>> listener) {
+		subscribers.removeIf(subscriber -> subscriber.listener == listener);
+	}
+
+	/**
+	 * The consumer loop: waits for an event, drains everything else already buffered, applies the batch and
+	 * notifies the subscribers.
+	 */
+	private void consume() {
+		ArrayList<Pending> batch = new ArrayList<>();
+		while (true) {
+			try {
+				batch.add(buffer.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			buffer.drainTo(batch);
+
+			ArrayList<Event> applied = new ArrayList<>(batch.size());
+			for (Pending pending : batch) {
+				if (apply(pending)) applied.add(pending.event);
+			}
+			batch.clear();
+
+			List<Event> events = Collections.unmodifiableList(applied);
+			for (Subscriber subscriber : subscribers) {
+				subscriber.executor.execute(() -> subscriber.listener.accept(events));
+			}
+		}
+	}
+
+	/**
+	 * Executes a single event and completes its future.
+	 *
+	 * @param pending the event to execute.
+	 * @return true if the event executed without throwing.
+	 */
+	private boolean apply(Pending pending) {
+		try {
+			pending.event.execute();
+			pending.done.complete(pending.event);
+			return true;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			pending.done.completeExceptionally(e);
+			return false;
+		}
+	}
+}
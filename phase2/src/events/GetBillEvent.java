@@ -1,22 +1,28 @@
 package events;
 
-import com.jfoenix.controls.JFXTextArea;
 import core.Order;
+import core.Payment;
 import core.Restaurant;
 import core.Table;
 import util.Log;
-import util.PaymentJsonWriter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 
 /**
- * Represents an event where a table requests its bill.
+ * Represents an event where a table requests its bill, or pays it.
+ * <p>
+ * A bill can be printed any number of times. Only paying it records a Payment in the PaymentLedger, after which
+ * the orders on the bill are archived and taken off the table, so no order is ever paid for twice; once no seat
+ * has orders left, the table is cleared. A bill can only be paid once all of its orders have been delivered.
  */
 public class GetBillEvent extends Event {
     private Table table; // The bill for the table
     private int seat; // The bill for the seat (optional)
+    private final boolean settle; // If the bill is paid, rather than only printed
     private double TAX_AMOUNT = 0.13; //The amount of Tax to be added
     private double AUTOMATIC_TIP_AMOUNT = 0.18; //The automatic gratuity to be added for tables >= 8.
     private String billText;
-    private JFXTextArea update;
 
     /**
      * Returns a GetBillEvent.
@@ -25,63 +31,100 @@ public class GetBillEvent extends Event {
      * @param table      a Table that this GetBill Event corresponds to.
      * @param seat       a seat that this GetBill Event corresponds to.
      */
-    public GetBillEvent(Restaurant restaurant, Table table, int seat, JFXTextArea update) {
+    public GetBillEvent(Restaurant restaurant, Table table, int seat) {
+        this(restaurant, table, seat, false);
+    }
+
+    /**
+     * Returns a GetBillEvent that prints the bill and, optionally, pays it.
+     *
+     * @param restaurant A Restaurant that this GetBill Event corresponds to.
+     * @param table      a Table that this GetBill Event corresponds to.
+     * @param seat       a seat that this GetBill Event corresponds to, or 0 for the whole table.
+     * @param settle     true if the bill is paid, recording the payment and taking its orders off the table.
+     */
+    public GetBillEvent(Restaurant restaurant, Table table, int seat, boolean settle) {
         super(TYPE.GET_BILL, restaurant);
         this.table = table;
         this.seat = seat;
-        this.update = update;
+        this.settle = settle;
+    }
+
+    /**
+     * Returns the text of the bill, once this event has been executed.
+     *
+     * @return the bill, or null if the event has not been executed.
+     */
+    public String getBillText() {
+        return billText;
     }
 
     /**
      * Executes a GetBillEvent.
+     *
+     * @throws IllegalStateException if the bill is paid while some of its orders are still to be delivered;
+     *                               nothing is then recorded.
      */
     @Override
     public void execute() {
-        double finalPrice = 0d;
+        if (settle && (seat >= 1 ? table.hasUndeliveredOrders(seat) : table.hasUndeliveredOrders())) {
+            throw new IllegalStateException(String.format("%s%s still has orders that have not been delivered",
+                    table, seat >= 1 ? " seat " + seat : ""));
+        }
+
+        String server = null; // The server of the first order on the bill
+        ArrayList<Payment.Item> items = new ArrayList<>();
 
         StringBuilder sb = new StringBuilder("Table Number: " + table.getTableNumber());
         sb.append(System.lineSeparator());
 
-        if (seat == 0) { // Gets the whole table's bill
-            for (Order order : table.getOrders()) {
-                sb.append(formatBill(order));
-                finalPrice += order.getPrice();
-            }
-
-        } else if (seat >= 1) { // Gets an individual seat's bill
+        if (seat >= 1) { // Gets an individual seat's bill
             sb.append("Seat Number: ").append(seat);
             sb.append(System.lineSeparator());
+        }
 
-            for (Order order : table.getOrders()) {
-                if (order.getSeatNumber() == seat) {
-                    sb.append(formatBill(order));
-                    finalPrice += order.getPrice();
-                }
+        // The table keeps the running subtotals in cents, so only the orders on the bill are visited
+        int first = seat >= 1 ? seat : 1;
+        int last = seat >= 1 ? seat : table.getNumberOfSeats();
+        for (int number = first; number <= last; number++) {
+            for (Order order : table.getOrders(number)) {
+                sb.append(formatBill(order));
+                items.add(new Payment.Item(order.getItem().getName(), order.getPriceInCents()));
+                if (server == null) server = order.getServerName();
             }
         }
 
-        double taxAmount = finalPrice * TAX_AMOUNT;
-        double tipAmount = 0;
+        long subtotal = seat >= 1 ? table.getSubtotal(seat) : table.getSubtotal();
+        long taxAmount = Math.round(subtotal * TAX_AMOUNT);
+        long tipAmount = 0;
         if (table.getCurrentCapacity() >= 8) {
-            tipAmount = finalPrice * AUTOMATIC_TIP_AMOUNT;
+            tipAmount = Math.round(subtotal * AUTOMATIC_TIP_AMOUNT);
         }
+        Payment payment = new Payment(LocalDateTime.now(), table.getTableNumber(), table.getNumberOfSeats(), seat,
+                server, subtotal, taxAmount, tipAmount, items);
 
         sb.append(System.lineSeparator());
-        sb.append("Subtotal:    ").append(String.format("$%.2f", finalPrice)).append(System.lineSeparator());
-        sb.append("Tax (HST):   ").append(String.format("$%.2f", taxAmount)).append(System.lineSeparator());
-        sb.append("Tip:         ").append(String.format("$%.2f", tipAmount)).append(System.lineSeparator());
-        sb.append("Total:       ").append(String.format("$%.2f", finalPrice + taxAmount + tipAmount)).append(System.lineSeparator());
-
-        table.setTablePayment((finalPrice + tipAmount + taxAmount));
-        PaymentJsonWriter.PaymentWriter(table);
-
-        Log.log(table, "bill has printed.");//TODO: another printed line???
+        sb.append("Subtotal:    ").append(Payment.format(subtotal)).append(System.lineSeparator());
+        sb.append("Tax (HST):   ").append(Payment.format(taxAmount)).append(System.lineSeparator());
+        sb.append("Tip:         ").append(Payment.format(tipAmount)).append(System.lineSeparator());
+        sb.append("Total:       ").append(Payment.format(payment.getTotal())).append(System.lineSeparator());
+
+        table.setTablePayment(payment.getTotal() / 100d);
+        if (settle && server != null) { // Nothing is paid for a bill without orders
+            restaurant.getPaymentLedger().record(payment);
+            if (seat >= 1) {
+                restaurant.clearSeat(table, seat);
+            } else {
+                restaurant.clearTable(table);
+            }
+            sb.append("Paid").append(System.lineSeparator());
+            Log.log(table, "bill has been paid.");
+        } else {
+            Log.log(table, "bill has printed.");//TODO: another printed line???
+        }
 
 
         billText = sb.toString();
-        update.setStyle("-fx-font-family: monospace");
-        update.clear();
-        update.setText(sb.toString());
     }
 
     /**
@@ -102,7 +145,7 @@ public class GetBillEvent extends Event {
         sb.append(order);
         sb.append(System.lineSeparator());
         sb.append("\t\tPrice: ");
-        sb.append(String.format("$%.2f", order.getPrice()));
+        sb.append(Payment.format(order.getPriceInCents()));
 
         return sb.toString();
     }
@@ -3,18 +3,15 @@ package events;
 import core.Order;
 import core.Restaurant;
 import util.Log;
-import visual.gui.Employee;
-import visual.gui.Manager;
 import visual.gui.Server;
 
-import java.util.ArrayList;
-
 /**
  * A class representing a OrderEvent.
  */
 public class OrderEvent extends Event {
     private final Order order; //an order
     private final Server server; // The server who took the order
+    private boolean placed = false; // If the order's ingredients were reserved
 
     /**
      * Creates an OrderEvent
@@ -39,6 +36,15 @@ public class OrderEvent extends Event {
     }
 
 
+    /**
+     * Returns if the order was placed, i.e. its ingredients were reserved and it was sent to the kitchen.
+     *
+     * @return true if the order was placed, false otherwise.
+     */
+    public boolean isPlaced() {
+        return placed;
+    }
+
     /**
      * Executes an OrderEvent.
      */
@@ -47,20 +53,20 @@ public class OrderEvent extends Event {
         if (!server.getIsAvailable()) {
             //TODO: need notification
         } else {
+            if (!this.restaurant.getIngredientManager().reserve(this.order)) {
+                Log.logID(server, server.getId(), String.format("Order %s could not be placed: out of ingredients",
+                        order));
+                return;
+            }
+            placed = true;
+
             restaurant.sendOrder(order);
             order.setProgress(Order.ORDER_ORDERED);
             order.getTable().updateBill(order);
             restaurant.addOrder(order);
 
-
-            this.restaurant.getIngredientManager().reserve(this.order);
-
             Log.logID(server, server.getId(), String.format("Order %s ordered for Table %d", order,
                     order.getTable().getTableNumber()));
-
-            ArrayList<Employee> employees= restaurant.getAllEmployees("Manager");
-            employees.forEach(employee -> ((Manager)employee).refreshOrders());
-            server.refreshOrders();
         }
     }
 }
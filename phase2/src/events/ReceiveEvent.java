@@ -4,10 +4,6 @@ import core.Order;
 import core.Restaurant;
 import util.Log;
 import visual.gui.Cook;
-import visual.gui.Employee;
-import visual.gui.Manager;
-
-import java.util.ArrayList;
 
 /**
  * A class representing a ReceiveEvent.
@@ -52,11 +48,7 @@ public class ReceiveEvent extends Event {
 	 */
 	@Override
 	public void execute() {
-
-		ArrayList<Employee> employees= restaurant.getAllEmployees("Cook");
 		cook.setAvailable(false);
-		employees.forEach(employee -> ((Cook) employee).refreshAssigned());
-
 
 		if (this.order.getProgress() == Order.ORDER_CANCELLED) {
 			System.err.printf("Order %s was cancelled, cannot complete event\n", order);
@@ -71,8 +63,5 @@ public class ReceiveEvent extends Event {
 
 		this.order.setProgress(Order.ORDER_RECEIVED);
 		Log.logID(cook, cook.getId(), String.format("Order %s received and ready to cook", order));
-		ArrayList<Employee> managers= restaurant.getAllEmployees("Manager");
-		managers.forEach(manager -> ((Manager)manager).refreshView());
-		order.getServer().refreshView();
 	}
 }
@@ -0,0 +1,51 @@
+package events;
+
+import core.Restaurant;
+import core.Table;
+import visual.gui.Server;
+
+/**
+ * A class that represents a SeatEvent, where a party is seated at the smallest free table that fits it.
+ */
+public class SeatEvent extends Event {
+	private final int partySize; // Number of people in the party
+	private final Server server; // Server seating the party
+	private Table table; // The table the party was seated at, if any
+
+	/**
+	 * Creates a SeatEvent.
+	 *
+	 * @param partySize the number of people in the party.
+	 * @param server    the Server seating the party.
+	 * @param res       a Restaurant.
+	 */
+	public SeatEvent(int partySize, Server server, Restaurant res) {
+		super(TYPE.SEAT, res);
+		this.partySize = partySize;
+		this.server = server;
+	}
+
+	/**
+	 * Executes a SeatEvent.
+	 */
+	@Override
+	public void execute() {
+		table = restaurant.getFloorPlan().getFreeTable(partySize);
+		if (table == null) {
+			server.log(String.format("No free table for a party of %d", partySize));
+			return;
+		}
+
+		table.seat(partySize);
+		server.log(String.format("Seated a party of %d at %s", partySize, table));
+	}
+
+	/**
+	 * Returns the table the party was seated at, once this event has been executed.
+	 *
+	 * @return a Table, or null if no free table was large enough.
+	 */
+	public Table getTable() {
+		return table;
+	}
+}
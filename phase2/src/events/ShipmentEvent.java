@@ -4,9 +4,7 @@ import core.Ingredient;
 import core.Restaurant;
 import util.Log;
 import visual.gui.Employee;
-import visual.gui.Manager;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -35,21 +33,18 @@ public class ShipmentEvent extends Event {
 	public void execute() {
 
 		this.ingredients.forEach((k, v) -> {
-			ArrayList<Employee> employees = restaurant.getAllEmployees();
-
 			k.addAmount(v);
 			Log.log(employee, String.format("Shipment (%s - %d) received by %s", k.toString(), v, employee.toString()));
-			employees.forEach(employee -> {
-				if (employee instanceof Manager) {
-					Manager manager = (Manager) employee;
-					manager.addArrival(k, v);
-					manager.updateInventory();
-					restaurant.getIngredientManager().backup();
-
-				}
-			});
-			restaurant.checkThresholds();
-
 		});
+		restaurant.checkThresholds();
+	}
+
+	/**
+	 * Returns the Ingredients in the shipment and their amounts.
+	 *
+	 * @return a map of Ingredients to amounts.
+	 */
+	public HashMap<Ingredient, Integer> getIngredients() {
+		return ingredients;
 	}
 }
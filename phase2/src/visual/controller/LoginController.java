@@ -9,14 +9,11 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.StackPane;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import visual.gui.Cook;
 import visual.gui.Manager;
 import visual.gui.Server;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
@@ -48,20 +45,23 @@ public class LoginController {
 	private static final String MENU_FP = "resources/settings/menu.json";
 	private static final String INGREDIENTS_FP = "resources/settings/ingredients.json";
 	private static final String SETTINGS_FP = "resources/settings/settings.json";
+	private static final String ACCOUNTS_FP = "resources/settings/accounts.json";
 
 	/**
 	 * Initialize this Log-In GUI and sets all the relevant listeners
 	 */
 	public void initialize() {
-		try {
-			JSONParser parser = new JSONParser();
-			Object obj = parser.parse(new FileReader(new File("resources/settings/accounts.json")));
+		File requests = new File(RESOURCES_FP);
+		File menu = new File(MENU_FP);
+		File ingredients = new File(INGREDIENTS_FP);
+		File settings = new File(SETTINGS_FP);
+		File accounts = new File(ACCOUNTS_FP);
+		Restaurant restaurant = new Restaurant(settings, ingredients, requests, menu, accounts);
 
-			userData = (JSONArray) obj;
+		try {
+			userData = restaurant.getAccounts();
 		} catch (IOException e) {
 			e.printStackTrace();
-		} catch (ParseException e) {
-			e.printStackTrace();
 			System.exit(1);
 		}
 
@@ -71,12 +71,6 @@ public class LoginController {
 			}
 		});
 
-		File requests = new File(RESOURCES_FP);
-		File menu = new File(MENU_FP);
-		File ingredients = new File(INGREDIENTS_FP);
-		File settings = new File(SETTINGS_FP);
-		Restaurant restaurant = new Restaurant(settings, ingredients, requests, menu);
-
 		submit.setDefaultButton(true);
 		submit.setOnAction(e -> {
 			String user = username.getText().trim();
@@ -7,15 +7,18 @@ import core.Ingredient;
 import core.Order;
 import core.Restaurant;
 import events.CookEvent;
+import events.Event;
 import events.ReceiveEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
 import javafx.util.Callback;
 import util.Wrapper;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
+
 
 /**
  * A controller class for the cook GUI
@@ -23,7 +26,7 @@ import java.util.HashMap;
 public class Cook extends Employee {
 	// this cook's current currentOrder
 	private Order currentOrder = null;
-	private static ArrayList<Order> assigned = new ArrayList<>();
+	private final Runnable assignedView = this::refreshAssigned; // Marked dirty when the kitchen queue changes
 
 	@FXML
 	JFXListView<Wrapper> orders;
@@ -99,14 +102,20 @@ public class Cook extends Employee {
 		takeButton.setOnAction(a -> {
 			Order order = (Order) orders.getSelectionModel().getSelectedItem().getValue();
 			if(order != null){
+				if (!restaurant.getKitchenQueue().claim(order)) {
+					showDialog("Order " + order + " was already taken", new ImageView(error));
+					refreshAssigned();
+					return;
+				}
+				// Busy from now on, not once the ReceiveEvent runs, so no refresh offers this cook another order
+				setAvailable(false);
 				currentOrder = order;
-				assigned.remove(order);
 				order.setCook(this);
 				viewOrder(order, true);
 				orders.getItems().clear();
 				orders.getItems().add(new Wrapper<>("Order Assigned", 0 , 0));
 				ReceiveEvent receiveEvent = new ReceiveEvent(order,this,restaurant);
-				receiveEvent.execute();
+				restaurant.getEventBus().publish(receiveEvent);
 				takeButton.setDisable(true);
 				cookedButton.setDisable(false);
 
@@ -116,7 +125,7 @@ public class Cook extends Employee {
 		cookedButton.setOnAction(a -> {
 			cookedButton.setDisable(true);
 			CookEvent event = new CookEvent(currentOrder, this, restaurant);
-			event.execute();
+			restaurant.getEventBus().publish(event);
 			orderInfo.getItems().clear();
 		});
 		refreshAssigned();
@@ -136,10 +145,8 @@ public class Cook extends Employee {
 		orderInfo.getItems().clear();
 		orderInfo.getItems().add(new Wrapper<>(text + order.getItem().toString(), -1, -1));
 
-		HashMap<Ingredient, Integer> ingredients = order.getAllIngredients();
-		for (Ingredient item : ingredients.keySet()) {
-			orderInfo.getItems().add(new Wrapper<>(item, ingredients.get(item) , 0));
-		}
+		order.getIngredients().forEach((item, amount) ->
+				orderInfo.getItems().add(new Wrapper<>(item, amount, 0)));
 	}
 
 	/**
@@ -160,24 +167,20 @@ public class Cook extends Employee {
 		return isAvailable;
 	}
 
-	/**
-	 * Sets the Order of the Cook.
-	 *
-	 * @param assignedOrder an Order.
-	 */
-	public static void assignOrder(Order assignedOrder) {
-		assigned.add(assignedOrder);
-
-
+	@Override
+	protected void onEvents(List<Event> events) {
+		RefreshScheduler.markDirty(assignedView);
 	}
 
 	public void refreshAssigned(){
 		if(!isAvailable)return;
-		orders.getItems().clear();
-		orders.getItems().add(new Wrapper<>("Available Orders", -1, -1));
-		for (Order item : assigned) {
-			orders.getItems().add(new Wrapper<>(item, assigned.indexOf(item), -2));
+		ArrayList<Wrapper> items = new ArrayList<>();
+		items.add(new Wrapper<>("Available Orders", -1, -1));
+		int index = 0;
+		for (Order item : restaurant.getKitchenQueue().getPending()) {
+			items.add(new Wrapper<>(item, index++, -2));
 		}
+		RefreshScheduler.sync(orders.getItems(), items, RefreshScheduler.SAME_WRAPPER);
 	}
 
 	/**
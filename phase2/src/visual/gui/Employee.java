@@ -4,6 +4,7 @@ import com.jfoenix.controls.*;
 import core.Ingredient;
 import core.Restaurant;
 import core.Table;
+import events.Event;
 import events.ShipmentEvent;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -37,7 +38,9 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Observable;
+import java.util.function.Consumer;
 
 /**
  * A Base Employee class and a valid GUI
@@ -47,7 +50,8 @@ public class Employee implements Comparable { //TODO: Observer stuff if we plan
     protected Restaurant restaurant; // a restaurant reference
     Callback<ListView<Node>, ListCell<Node>> factory;
     protected Comparator<Node> comparator;
-    protected boolean isAvailable;
+    protected volatile boolean isAvailable; // Set by events on the event thread, read by the screen
+    private final Consumer<List<Event>> eventListener = this::onEvents; // Subscribed to the restaurant's EventBus
 
     /*
     FXML variables
@@ -196,9 +200,28 @@ public class Employee implements Comparable { //TODO: Observer stuff if we plan
         Scene sc = new Scene(decorator, WIDTH, HEIGHT);
         sc.getStylesheets().add(Login.getCSS()); //TODO: Fix this
         stage.setScene(sc);
-        stage.setOnHiding(a -> restaurant.logout(this));
+        stage.setOnHiding(a -> {
+            restaurant.getEventBus().unsubscribe(eventListener);
+            onClose();
+            restaurant.logout(this);
+        });
 
         stage.show();
+        restaurant.getEventBus().subscribe(eventListener, Platform::runLater);
+    }
+
+    /**
+     * Called on the JavaFX thread after the restaurant applied a batch of events, to refresh this GUI.
+     *
+     * @param events the events that were applied, in order
+     */
+    protected void onEvents(List<Event> events) {
+    }
+
+    /**
+     * Called on the JavaFX thread when this GUI is closed, before the employee is logged out.
+     */
+    protected void onClose() {
     }
 
     /**
@@ -524,7 +547,7 @@ public class Employee implements Comparable { //TODO: Observer stuff if we plan
                     int num = Integer.parseInt(amount.getText().trim());
                     HashMap<Ingredient, Integer> ings = new HashMap<>();
                     ings.put(ing, num);
-                    new ShipmentEvent(ings, restaurant, this).execute();
+                    restaurant.getEventBus().publish(new ShipmentEvent(ings, restaurant, this));
                 }
             });
 
@@ -769,6 +792,16 @@ public class Employee implements Comparable { //TODO: Observer stuff if we plan
         return obj instanceof Employee && ((Employee) obj).getUser().toLowerCase().equals(this.getUser().toLowerCase());
     }
 
+    /**
+     * Returns a hash code consistent with equals
+     *
+     * @return the hash code of the lower case username
+     */
+    @Override
+    public int hashCode() {
+        return this.getUser().toLowerCase().hashCode();
+    }
+
     /**
      * Gets a string representation of this user
      *
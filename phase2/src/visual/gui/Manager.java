@@ -5,24 +5,25 @@ import com.jfoenix.controls.JFXListCell;
 import com.jfoenix.controls.JFXListView;
 import com.jfoenix.controls.JFXTextArea;
 import core.*;
+import events.Event;
+import events.ShipmentEvent;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.util.Callback;
+import javafx.util.Duration;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import util.Wrapper;
 
-import org.json.simple.parser.JSONParser;
-
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.File;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Date;
-
-import org.json.simple.parser.ParseException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -50,6 +51,8 @@ public class Manager extends Employee {
     JFXButton getRequests;
     @FXML
     JFXButton getPayments;
+    @FXML
+    JFXButton getLatency;
 
 
 
@@ -57,6 +60,16 @@ public class Manager extends Employee {
 
     private Order viewing;
 
+    // Views marked dirty by events, refreshed at most once per pulse
+    private final Runnable inventoryView = this::updateInventory;
+    private final Runnable ordersView = this::refreshOrders;
+    private final Runnable orderInfoView = this::refreshView;
+
+    private Timeline statSampler; // Refreshes the statistics views every STAT_SAMPLE_PERIOD seconds
+    private LocalDate paymentsDate; // The business date whose payments are shown, if any
+    private static final int STAT_SAMPLE_PERIOD = 2;
+    private static final String LATENCY_EXPORT = "resources/data/latency.csv"; // Where latency percentiles are exported
+
     /**
      * Initializes a new Manager
      *
@@ -122,15 +135,25 @@ public class Manager extends Employee {
 
 
         getRequests.setOnAction(a -> {
+            paymentsDate = null;
             this.requestsText.clear();
             this.requestsText.setText(this.restaurant.getIngredientManager().getReorderString());
         });
 
-        //TODO:
+        getLatency.setOnAction(a -> {
+            paymentsDate = null;
+            LatencyTracker latency = this.restaurant.getLatencyTracker();
+            latency.export(new File(LATENCY_EXPORT));
+            this.requestsText.setText(latency.getReport()
+                    + String.format("%sExported to %s", System.lineSeparator(), LATENCY_EXPORT));
+        });
+
         getPayments.setOnAction(a -> {
+            paymentsDate = null;
             this.requestsText.clear();
 
-            getDateFromSelector(date -> {parsePayments(date);
+            getDateFromSelector(date -> {
+                if (date != null) showPayments(date);
                 return null;
             });
 
@@ -152,42 +175,96 @@ public class Manager extends Employee {
         refreshOrders();
         orderInfo.getItems().add(new Wrapper<>("Order Information", -1, -1));
 
+        // Statistics change with every order, so they are sampled at a fixed rate rather than per event
+        statSampler = new Timeline(new KeyFrame(Duration.seconds(STAT_SAMPLE_PERIOD), a -> {
+            updateMenuStat();
+            updateIngredientStat();
+        }));
+        statSampler.setCycleCount(Animation.INDEFINITE);
+        statSampler.play();
+
 
     }
 
-    //TODO: check if this works once get bill is done
+    /**
+     * Shows the revenue of a business date right away, from its rollup, and lists its payments below once they
+     * have been read, off the JavaFX thread.
+     *
+     * @param ldate the business date.
+     */
+    private void showPayments(LocalDate ldate) {
+        PaymentLedger ledger = restaurant.getPaymentLedger();
+        Revenue revenue = ledger.getRevenue(ldate);
+        paymentsDate = ldate;
+        this.requestsText.setText(parseRevenue(ldate, revenue));
+        if (revenue == null) return;
+
+        CompletableFuture.supplyAsync(() -> ledger.getPayments(ldate)).whenComplete((list, failure) ->
+                Platform.runLater(() -> {
+                    if (!ldate.equals(paymentsDate)) return; // Another date is shown by now
+
+                    StringBuilder payments = new StringBuilder(String.format("%s%sPayments:", System.lineSeparator(),
+                            System.lineSeparator()));
+                    if (failure != null) {
+                        payments.append(String.format("%sUnable to read the payments: %s", System.lineSeparator(),
+                                failure.getMessage()));
+                    } else {
+                        list.forEach(payment -> payments.append(System.lineSeparator()).append(payment));
+                    }
+                    this.requestsText.appendText(payments.toString());
+                }));
+    }
 
-    private String parsePayments( LocalDate ldate) {
+    /**
+     * Describes the revenue of a business date in total, by server, by table size and by menu item.
+     *
+     * @param ldate   the business date.
+     * @param revenue its revenue, as rolled up by the PaymentLedger; null if no payments were made.
+     * @return the revenue, one amount per line.
+     */
+    private String parseRevenue(LocalDate ldate, Revenue revenue) {
         StringBuilder payments = new StringBuilder();
-        payments.append(String.format("Payments for %S", ldate.toString()));
-        double dailyEarnings = 0;
-        try {
-            JSONParser parser = new JSONParser();
-            Object obj = parser.parse(new FileReader("resources/data/payments.json"));
-            JSONArray data = (JSONArray) obj;
-
-            for (Object item : data) {
-                JSONObject paymentObject = (JSONObject) item;
-                Date date = (Date) paymentObject.get("date");
-
-                if (date.equals(ldate)){
-                    String server = (String) paymentObject.get("server");
-                    Double payment = (double) paymentObject.get("payment");
-                    int tableNum = ((Long) paymentObject.get("tableNumber")).intValue();
-                    payments.append(String.format("%s Table Number: %s, Server: %s, Total Payment: %d", System.lineSeparator(), tableNum, server,payment ));
-                    dailyEarnings += payment;
+        payments.append(String.format("Payments for %s", ldate.toString()));
+        if (revenue == null) {
+            payments.append(String.format("%sNo payments were made.", System.lineSeparator()));
+            return payments.toString();
+        }
 
-                }
-            }
-            payments.append(String.format("%s Total payments for the day: %s", System.lineSeparator(), payments));
+        payments.append(String.format("%s%sTotal payments for the day: %s (%d bills, %s tax, %s tip)",
+                System.lineSeparator(), System.lineSeparator(), Payment.format(revenue.getTotal()),
+                revenue.getBills(), Payment.format(revenue.getTax()), Payment.format(revenue.getTip())));
+
+        payments.append(String.format("%s%sBy server:", System.lineSeparator(), System.lineSeparator()));
+        revenue.getByServer().forEach((server, amount) -> payments.append(String.format("%s %s: %s (%d bills)",
+                System.lineSeparator(), server.isEmpty() ? "unknown" : server, Payment.format(amount.getCents()),
+                amount.getCount())));
+        payments.append(String.format("%s%sBy table size:", System.lineSeparator(), System.lineSeparator()));
+        revenue.getByTableSize().forEach((size, amount) -> payments.append(String.format("%s %d seats: %s (%d bills)",
+                System.lineSeparator(), size, Payment.format(amount.getCents()), amount.getCount())));
+        payments.append(String.format("%s%sBy menu item:", System.lineSeparator(), System.lineSeparator()));
+        revenue.getByItem().forEach((item, amount) -> payments.append(String.format("%s %s: %s (%d sold)",
+                System.lineSeparator(), item, Payment.format(amount.getCents()), amount.getCount())));
+        return payments.toString();
+    }
 
-        } catch (ParseException | IOException e) {
-            e.printStackTrace();
-        }
 
-        return payments.toString(); //TODO: when no orders for the day
+    @Override
+    protected void onClose() {
+        if (statSampler != null) statSampler.stop();
     }
 
+    @Override
+    protected void onEvents(List<Event> events) {
+        for (Event event : events) {
+            if (event instanceof ShipmentEvent) {
+                ((ShipmentEvent) event).getIngredients().forEach(this::addArrival);
+            }
+        }
+
+        RefreshScheduler.markDirty(inventoryView);
+        RefreshScheduler.markDirty(ordersView);
+        RefreshScheduler.markDirty(orderInfoView);
+    }
 
     /**
      * Record the latest arrival
@@ -203,35 +280,44 @@ public class Manager extends Employee {
      * Update Inventory display
      */
     public void updateInventory() {
-        inventory.getItems().clear();
-        inventory.getItems().add(new Wrapper<>("Inventory", -1, -1));
+        ArrayList<Wrapper> items = new ArrayList<>();
+        items.add(new Wrapper<>("Inventory", -1, -1));
         for (Ingredient item : restaurant.getInventoryList()) {
-            inventory.getItems().add(new Wrapper<>(item, item.getAmount(), -2));
+            items.add(new Wrapper<>(item, item.getAmount(), -2));
         }
+        RefreshScheduler.sync(inventory.getItems(), items, RefreshScheduler.SAME_WRAPPER);
     }
 
     /**
      * Update MenuItem statistics display
      */
     public void updateMenuStat() {
-        dishStat.getItems().clear();
-        dishStat.getItems().add(new Wrapper<>("Menu Items", -1, -1));
-        ArrayList<MenuItem> items = statistics.getMenuItems();
+        ArrayList<Wrapper> rows = new ArrayList<>();
+        rows.add(new Wrapper<>("Menu Items", -1, -1));
+        ArrayList<MenuItem> items = statistics.getTopMenuItems(Statistics.TOP_K);
         for (MenuItem item : items) {
-            dishStat.getItems().add(new Wrapper<>(item, item.getUsage(), -1));
+            Wrapper<MenuItem> row = new Wrapper<>(item, item.getUsage(), -1);
+            row.setToString(String.format("%s (%d last hour)", item,
+                    statistics.getUsage(item, Statistics.Window.HOUR)));
+            rows.add(row);
         }
+        RefreshScheduler.sync(dishStat.getItems(), rows, RefreshScheduler.SAME_WRAPPER);
     }
 
     /**
      * Update Ingredient statistics display
      */
     public void updateIngredientStat() {
-        ingredientStat.getItems().clear();
-        ingredientStat.getItems().add(new Wrapper<>("Ingredients", -1, -1));
-        ArrayList<Ingredient> items = statistics.getIngredients();
+        ArrayList<Wrapper> rows = new ArrayList<>();
+        rows.add(new Wrapper<>("Ingredients", -1, -1));
+        ArrayList<Ingredient> items = statistics.getTopIngredients(Statistics.TOP_K);
         for (Ingredient item : items) {
-            ingredientStat.getItems().add(new Wrapper<>(item, item.getUsage(), -1));
+            Wrapper<Ingredient> row = new Wrapper<>(item, item.getUsage(), -1);
+            row.setToString(String.format("%s (%d last hour)", item,
+                    statistics.getUsage(item, Statistics.Window.HOUR)));
+            rows.add(row);
         }
+        RefreshScheduler.sync(ingredientStat.getItems(), rows, RefreshScheduler.SAME_WRAPPER);
     }
 
 
@@ -240,12 +326,12 @@ public class Manager extends Employee {
      */
     public void refreshOrders() {
         if (!isAvailable) return;
-        orders.getItems().clear();
-        orders.getItems().add(new Wrapper<>("Active Orders", -1, -1));
-        for (Order item : restaurant.getAllOrders()) {
-            if (item.isDelivered() || item.isCancelled()) continue;
-            orders.getItems().add(new Wrapper<>(item, item.getOrderNumber(), -2));
+        ArrayList<Wrapper> items = new ArrayList<>();
+        items.add(new Wrapper<>("Active Orders", -1, -1));
+        for (Order item : restaurant.getOrderStore().getActiveOrders()) {
+            items.add(new Wrapper<>(item, item.getOrderNumber(), -2));
         }
+        RefreshScheduler.sync(orders.getItems(), items, RefreshScheduler.SAME_WRAPPER);
     }
 
     /**
@@ -263,16 +349,17 @@ public class Manager extends Employee {
      */
     private void viewOrder(Order order) {
         viewing = order;
-        orderInfo.getItems().clear();
-        orderInfo.getItems().add(new Wrapper<>("Order Information", -1, -1));
-        orderInfo.getItems().add(new Wrapper<>("Menu Item: " + order.getItem(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Cook: " + order.getCook(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Server: " + order.getServer(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Order Number: " + order.getOrderNumber(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Table: " + order.getTable(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Seat: " + order.getSeatNumber(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Received: " + order.isReceived(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Cooked: " + order.isCooked(), 0, 42));
+        ArrayList<Wrapper> items = new ArrayList<>();
+        items.add(new Wrapper<>("Order Information", -1, -1));
+        items.add(new Wrapper<>("Menu Item: " + order.getItem(), 0, 42));
+        items.add(new Wrapper<>("Cook: " + order.getCook(), 0, 42));
+        items.add(new Wrapper<>("Server: " + order.getServer(), 0, 42));
+        items.add(new Wrapper<>("Order Number: " + order.getOrderNumber(), 0, 42));
+        items.add(new Wrapper<>("Table: " + order.getTable(), 0, 42));
+        items.add(new Wrapper<>("Seat: " + order.getSeatNumber(), 0, 42));
+        items.add(new Wrapper<>("Received: " + order.isReceived(), 0, 42));
+        items.add(new Wrapper<>("Cooked: " + order.isCooked(), 0, 42));
+        RefreshScheduler.sync(orderInfo.getItems(), items, RefreshScheduler.SAME_WRAPPER);
 
 
     }
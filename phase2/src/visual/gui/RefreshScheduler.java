@@ -0,0 +1,104 @@
+package visual.gui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import util.Wrapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * Coalesces GUI refreshes so every view is rebuilt at most once per JavaFX pulse.
+ * <p>
+ * Views are marked dirty instead of being rebuilt right away; the scheduler runs on the next animation pulse
+ * and refreshes each dirty view once, no matter how many events marked it. It only runs while something is
+ * dirty.
+ */
+class RefreshScheduler extends AnimationTimer {
+	private static RefreshScheduler instance; // The shared scheduler, only touched on the JavaFX thread
+
+	/**
+	 * Two list items show the same thing if they wrap the same value with the same data and text.
+	 */
+	static final BiPredicate<Wrapper, Wrapper> SAME_WRAPPER = (a, b) ->
+			Objects.equals(a.getValue(), b.getValue()) && a.getData() == b.getData()
+					&& a.getVariable() == b.getVariable() && a.toString().equals(b.toString());
+
+	private final LinkedHashSet<Runnable> dirty = new LinkedHashSet<>(); // Views to refresh on the next pulse
+	private boolean running = false; // If the timer is started
+
+	/**
+	 * Marks a view as needing a refresh on the next pulse. The same Runnable instance must be used every time
+	 * for a view, so that marks are coalesced.
+	 *
+	 * @param view refreshes the view.
+	 */
+	static void markDirty(Runnable view) {
+		if (!Platform.isFxApplicationThread()) {
+			Platform.runLater(() -> markDirty(view));
+			return;
+		}
+
+		if (instance == null) instance = new RefreshScheduler();
+		instance.dirty.add(view);
+		if (!instance.running) {
+			instance.running = true;
+			instance.start();
+		}
+	}
+
+	/**
+	 * Refreshes every dirty view once, then stops until a view is marked again.
+	 *
+	 * @param now the timestamp of the current pulse.
+	 */
+	@Override
+	public void handle(long now) {
+		ArrayList<Runnable> views = new ArrayList<>(dirty);
+		dirty.clear();
+		views.forEach(Runnable::run);
+
+		if (dirty.isEmpty()) {
+			running = false;
+			stop();
+		}
+	}
+
+	/**
+	 * Makes a list show the target items with as few changes as possible. Only the range between the common
+	 * prefix and the common suffix is replaced, so the usual case of one item added, removed or changed
+	 * touches one cell instead of rebuilding the list.
+	 *
+	 * @param items  the list to update, e.g. the items of a ListView.
+	 * @param target what the list should contain.
+	 * @param same   decides if an existing item can be kept in place of a target item.
+	 * @param <T>    the type of the items.
+	 */
+	static <T> void sync(List<T> items, List<T> target, BiPredicate<? super T, ? super T> same) {
+		int prefix = 0;
+		int max = Math.min(items.size(), target.size());
+		while (prefix < max && same.test(items.get(prefix), target.get(prefix))) prefix++;
+
+		int suffix = 0;
+		while (suffix < max - prefix
+				&& same.test(items.get(items.size() - 1 - suffix), target.get(target.size() - 1 - suffix))) {
+			suffix++;
+		}
+
+		List<T> middle = target.subList(prefix, target.size() - suffix);
+		List<T> replaced = items.subList(prefix, items.size() - suffix);
+		if (replaced.isEmpty() && middle.isEmpty()) return;
+
+		if (replaced.size() == middle.size()) {
+			for (int i = 0; i < middle.size(); i++) {
+				replaced.set(i, middle.get(i));
+			}
+		} else {
+			replaced.clear();
+			items.addAll(prefix, new ArrayList<>(middle));
+		}
+	}
+}
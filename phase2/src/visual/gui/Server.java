@@ -1,16 +1,22 @@
 package visual.gui;
 
 import com.jfoenix.controls.JFXButton;
+import com.jfoenix.controls.JFXComboBox;
 import com.jfoenix.controls.JFXListCell;
 import com.jfoenix.controls.JFXListView;
 import com.jfoenix.controls.JFXTextArea;
 import core.*;
 import core.MenuItem;
 import events.CancelEvent;
+import events.ClearTableEvent;
 import events.DeliverEvent;
+import events.Event;
 import events.GetBillEvent;
 import events.OrderEvent;
+import events.SeatEvent;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
@@ -21,6 +27,7 @@ import util.Wrapper;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public class Server extends Employee {
     //IMPORTANT: DO NOT SET TO PRIVATE!!!!!
@@ -49,6 +56,8 @@ public class Server extends Employee {
 
     @FXML
     JFXButton submitButton;
+    @FXML
+    JFXButton seatParty;
 
     @FXML
     JFXButton deliver;
@@ -63,10 +72,16 @@ public class Server extends Employee {
     @FXML
     JFXButton getBill;
     @FXML
+    JFXButton payBill;
+    @FXML
+    JFXButton clearTable;
+    @FXML
     JFXTextArea billTextBox;
 
     Order orderToBeDelivered;
     private Order viewing;
+    private final Runnable ordersView = this::refreshOrders; // Marked dirty when orders change
+    private final Runnable orderInfoView = this::refreshView; // Marked dirty when orders change
 
 
     public Server(String user, Restaurant restaurant) {
@@ -101,6 +116,9 @@ public class Server extends Employee {
                 if (wrapper.getValue() instanceof MenuItem) {
                     MenuItem item = (MenuItem) wrapper.getValue();
                     setIngredientLists(item);
+                    // Out of stock items cannot be ordered, rather than failing once the order is submitted
+                    submitButton.setDisable(!restaurant.getMakeableCache().isMakeable(item));
+                    return;
                 }
             }
             submitButton.setDisable(false);
@@ -193,8 +211,17 @@ public class Server extends Employee {
                     showDialog("Could not place order: out of ingredients", new ImageView(error));
                 } else {
                     OrderEvent createOrder = new OrderEvent(order, this, this.restaurant);
-                    createOrder.execute();
-                    showDialog("Order sent", new ImageView(success));
+                    restaurant.getEventBus().publish(createOrder)
+                            .whenComplete((event, failure) -> Platform.runLater(() -> {
+                                if (failure != null) {
+                                    showDialog("Could not place order: " + failure.getMessage(),
+                                            new ImageView(error));
+                                } else if (createOrder.isPlaced()) {
+                                    showDialog("Order sent", new ImageView(success));
+                                } else {
+                                    showDialog("Could not place order: out of ingredients", new ImageView(error));
+                                }
+                            }));
 
                 }
 
@@ -202,12 +229,12 @@ public class Server extends Employee {
             });
         });
 
+        seatParty.setOnAction(a -> seatParty());
+
         deliver.setOnAction(a -> {
             Order order = (Order) toDeliver.getSelectionModel().getSelectedItem().getValue();
             DeliverEvent event = new DeliverEvent(order, this, restaurant);
-            event.execute();
-            refreshOrders();
-            refreshView();
+            restaurant.getEventBus().publish(event);
             deliver.setDisable(true);
         });
 
@@ -252,15 +279,22 @@ public class Server extends Employee {
 
         orderInfo.getItems().add(new Wrapper<>("Order Information", -1, -1));
 
-        getBill.setOnAction(a -> {
-            getTableFromSelector(true, true, true, (tuple) -> {
-                Table table = tuple.x;
-                int seat = tuple.y;
+        getBill.setOnAction(a -> showBill(false));
+        payBill.setOnAction(a -> showBill(true));
 
-                if (!table.isOccupied())
-                    return null;
+        clearTable.setOnAction(a -> {
+            getTableFromSelector(false, true, false, (tuple) -> {
+                Table table = tuple.x;
 
-                new GetBillEvent(restaurant, table, seat, billTextBox).execute();
+                restaurant.getEventBus().publish(new ClearTableEvent(table, this, restaurant))
+                        .whenComplete((event, failure) -> Platform.runLater(() -> {
+                            if (failure != null) {
+                                showDialog("Could not clear " + table + ": " + failure.getMessage(),
+                                        new ImageView(error));
+                            } else {
+                                showDialog(table + " cleared", new ImageView(success));
+                            }
+                        }));
 
                 return null;
             });
@@ -288,7 +322,8 @@ public class Server extends Employee {
                         return;
                     }
 
-                    new CancelEvent(restaurant, order, CancelEvent.REASON.CUSTOMER_CANCELLED, null).execute();
+                    restaurant.getEventBus().publish(
+                            new CancelEvent(restaurant, order, CancelEvent.REASON.CUSTOMER_CANCELLED, null));
                 });
 
                 dialog.getChildren().addAll(orderComboBox, confirm, error);
@@ -299,6 +334,77 @@ public class Server extends Employee {
         });
     }
 
+    /**
+     * Asks for the size of a party and seats it at the smallest free table that fits it.
+     */
+    private void seatParty() {
+        FloorPlan floor = restaurant.getFloorPlan();
+        VBox dialog = new VBox(10);
+
+        JFXComboBox<Wrapper> sizeSelector = new JFXComboBox<>();
+        int free = 0;
+        for (int size = floor.getMaxSeats(); size >= 1; size--) {
+            free += floor.getFreeCount(size); // Tables at least this large
+            Wrapper<Integer> wrapper = new Wrapper<>(size, size, 0);
+            wrapper.setToString(String.format("Party of %d (%d tables free)", size, free));
+            sizeSelector.getItems().add(0, wrapper);
+        }
+        sizeSelector.setPromptText("Party Size");
+
+        JFXButton seat = new JFXButton("Seat");
+        seat.setOnAction(action -> {
+            Wrapper wrap = sizeSelector.getSelectionModel().getSelectedItem();
+            if (wrap == null) {
+                showDialog("Must select a party size", new ImageView(error));
+                return;
+            }
+
+            SeatEvent event = new SeatEvent(wrap.getData(), this, restaurant);
+            restaurant.getEventBus().publish(event).whenComplete((done, failure) -> Platform.runLater(() -> {
+                if (failure != null) {
+                    showDialog("Could not seat the party: " + failure.getMessage(), new ImageView(error));
+                } else if (event.getTable() == null) {
+                    showDialog("No free table for a party of " + wrap.getData(), new ImageView(error));
+                } else {
+                    showDialog("Seat the party at " + event.getTable(), new ImageView(success));
+                }
+            }));
+        });
+
+        dialog.getChildren().addAll(sizeSelector, seat);
+        dialog.setAlignment(Pos.CENTER);
+        showDialog(dialog, "Seat Party", seat);
+    }
+
+    /**
+     * Asks for a table and seat, and shows their bill once it has been printed or paid.
+     *
+     * @param settle true to pay the bill, false to only print it.
+     */
+    private void showBill(boolean settle) {
+        getTableFromSelector(true, true, true, (tuple) -> {
+            Table table = tuple.x;
+            int seat = tuple.y;
+
+            if (!table.isOccupied())
+                return null;
+
+            GetBillEvent bill = new GetBillEvent(restaurant, table, seat, settle);
+            restaurant.getEventBus().publish(bill).whenComplete((event, failure) -> Platform.runLater(() -> {
+                billTextBox.clear();
+                if (failure != null) {
+                    showDialog((settle ? "Could not pay the bill of " : "Could not get the bill of ") + table + ": "
+                            + failure.getMessage(), new ImageView(error));
+                    return;
+                }
+                billTextBox.setStyle("-fx-font-family: monospace");
+                billTextBox.setText(bill.getBillText());
+            }));
+
+            return null;
+        });
+    }
+
     private void handleMovingFromExisting(JFXListView<Node> removeList, JFXListView<Node> addList) {
         //get from current list, put to additional list
         Node selected = removeList.getSelectionModel().getSelectedItem();
@@ -447,22 +553,29 @@ public class Server extends Employee {
     }
 
 
+    @Override
+    protected void onEvents(List<Event> events) {
+        RefreshScheduler.markDirty(ordersView);
+        RefreshScheduler.markDirty(orderInfoView);
+    }
+
     /**
      * Refresh active orders
      */
     public void refreshOrders() {
         if (!isAvailable) return;
-        orders.getItems().clear();
-        orders.getItems().add(new Wrapper<>("Active Orders", -1, -1));
-        toDeliver.getItems().clear();
-        toDeliver.getItems().add(new Wrapper<>("Ready to Deliver", -1, -1));
-        for (Order item : restaurant.getAllOrders()) {
-            if (item.isCooked() && !item.isDelivered()) {
-                toDeliver.getItems().add(new Wrapper<>(item, item.getOrderNumber(), -2));
-            }
-            if (item.isDelivered() || item.isCancelled() || item.getServer() != this) continue;
-            orders.getItems().add(new Wrapper<>(item, item.getOrderNumber(), -2));
+        ArrayList<Wrapper> active = new ArrayList<>();
+        active.add(new Wrapper<>("Active Orders", -1, -1));
+        ArrayList<Wrapper> ready = new ArrayList<>();
+        ready.add(new Wrapper<>("Ready to Deliver", -1, -1));
+        for (Order item : restaurant.getOrderStore().getOrders(Order.ORDER_COOKED)) {
+            ready.add(new Wrapper<>(item, item.getOrderNumber(), -2));
         }
+        for (Order item : restaurant.getOrderStore().getActiveOrders(this)) {
+            active.add(new Wrapper<>(item, item.getOrderNumber(), -2));
+        }
+        RefreshScheduler.sync(orders.getItems(), active, RefreshScheduler.SAME_WRAPPER);
+        RefreshScheduler.sync(toDeliver.getItems(), ready, RefreshScheduler.SAME_WRAPPER);
     }
 
     /**
@@ -480,14 +593,15 @@ public class Server extends Employee {
      */
     private void viewOrder(Order order) {
         viewing = order;
-        orderInfo.getItems().clear();
-        orderInfo.getItems().add(new Wrapper<>("Order Information", -1, -1));
-        orderInfo.getItems().add(new Wrapper<>("Menu Item: " + order.getItem(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Cook: " + order.getCook(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Order Number: " + order.getOrderNumber(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Table: " + order.getTable(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Seat: " + order.getSeatNumber(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Received: " + order.isReceived(), 0, 42));
-        orderInfo.getItems().add(new Wrapper<>("Cooked: " + order.isCooked(), 0, 42));
+        ArrayList<Wrapper> items = new ArrayList<>();
+        items.add(new Wrapper<>("Order Information", -1, -1));
+        items.add(new Wrapper<>("Menu Item: " + order.getItem(), 0, 42));
+        items.add(new Wrapper<>("Cook: " + order.getCook(), 0, 42));
+        items.add(new Wrapper<>("Order Number: " + order.getOrderNumber(), 0, 42));
+        items.add(new Wrapper<>("Table: " + order.getTable(), 0, 42));
+        items.add(new Wrapper<>("Seat: " + order.getSeatNumber(), 0, 42));
+        items.add(new Wrapper<>("Received: " + order.isReceived(), 0, 42));
+        items.add(new Wrapper<>("Cooked: " + order.isCooked(), 0, 42));
+        RefreshScheduler.sync(orderInfo.getItems(), items, RefreshScheduler.SAME_WRAPPER);
     }
 }
@@ -0,0 +1,111 @@
+package core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AtomicFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private AtomicFile atomic;
+
+	@Before
+	public void create() {
+		file = new File(folder.getRoot(), "snapshot.json");
+		atomic = new AtomicFile(file);
+	}
+
+	@Test
+	public void readsWhatWasWritten() throws IOException {
+		atomic.write("{\"a\":1}");
+		atomic.write("{\"a\":2}");
+
+		assertEquals("{\"a\":2}", atomic.read());
+		assertFalse(atomic.readPrevious());
+		assertTrue(new File(file.getPath() + ".prev").exists());
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void corruptFileFallsBackToPrevious() throws IOException {
+		atomic.write("{\"a\":1}");
+		atomic.write("{\"a\":2}");
+
+		// Flip a byte of the data, so the checksum no longer matches
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long at = raf.length() - 4;
+			raf.seek(at);
+			int b = raf.read();
+			raf.seek(at);
+			raf.write(b ^ 1);
+		}
+
+		assertEquals("{\"a\":1}", atomic.read());
+		assertTrue(atomic.readPrevious());
+	}
+
+	@Test
+	public void tornFileFallsBackToPrevious() throws IOException {
+		atomic.write("{\"a\":1}");
+		atomic.write("{\"a\":2}");
+
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+
+		assertEquals("{\"a\":1}", atomic.read());
+		assertTrue(atomic.readPrevious());
+	}
+
+	@Test
+	public void missingFileFallsBackToPrevious() throws IOException {
+		atomic.write("{\"a\":1}");
+		atomic.write("{\"a\":2}");
+		assertTrue(file.delete());
+
+		assertEquals("{\"a\":1}", atomic.read());
+		assertTrue(atomic.readPrevious());
+	}
+
+	@Test
+	public void bothGenerationsDamagedReadsNull() throws IOException {
+		atomic.write("{\"a\":1}");
+		atomic.write("{\"a\":2}");
+		Files.write(file.toPath(), new byte[0]);
+		Files.write(new File(file.getPath() + ".prev").toPath(), "{\"crc32\":\"00000000\",\"data\":{}}\n"
+				.getBytes(StandardCharsets.UTF_8));
+
+		assertNull(atomic.read());
+	}
+
+	@Test
+	public void unsealedFileIsReadAsItIs() throws IOException {
+		Files.write(file.toPath(), "{\"legacy\":true}".getBytes(StandardCharsets.UTF_8));
+
+		assertEquals("{\"legacy\":true}", atomic.read());
+		assertFalse(atomic.readPrevious());
+	}
+
+	@Test
+	public void replaceWritesUnsealed() throws IOException {
+		File requests = new File(folder.getRoot(), "requests.txt");
+		AtomicFile.replace(requests, "Fish 20\n");
+
+		assertEquals("Fish 20\n", new String(Files.readAllBytes(requests.toPath()), StandardCharsets.UTF_8));
+		assertFalse(new File(requests.getPath() + ".tmp").exists());
+	}
+}
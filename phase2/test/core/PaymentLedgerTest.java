@@ -0,0 +1,95 @@
+package core;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PaymentLedgerTest {
+	private static final LocalDateTime NOON = LocalDateTime.of(2018, 11, 20, 12, 0);
+	private static final LocalDate DATE = NOON.toLocalDate();
+
+	private final MemoryStorage storage = new MemoryStorage(null);
+
+	private static Payment payment(LocalDateTime time, long subtotal) {
+		return new Payment(time, 1, 4, 0, "alice", subtotal, subtotal / 10, 0,
+				Collections.singletonList(new Payment.Item("Fish Burger", subtotal)));
+	}
+
+	@Test
+	public void paymentsAreListedBeforeTheyAreWritten() {
+		StorageWriter writer = new StorageWriter(storage, Long.MAX_VALUE / 2);
+		PaymentLedger ledger = new PaymentLedger(storage, writer);
+		ledger.record(payment(NOON, 1000));
+		ledger.record(payment(NOON.plusMinutes(5), 2000));
+
+		assertEquals(2, ledger.getPayments(DATE).size());
+		writer.close();
+		assertEquals(2, ledger.getPayments(DATE).size());
+	}
+
+	@Test
+	public void earlyMorningBelongsToThePreviousDate() {
+		StorageWriter writer = new StorageWriter(storage, 0);
+		PaymentLedger ledger = new PaymentLedger(storage, writer);
+		ledger.record(payment(DATE.plusDays(1).atTime(2, 0), 500));
+		writer.close();
+
+		assertEquals(500, ledger.getRevenue(DATE).getSubtotal());
+		assertNull(ledger.getRevenue(DATE.plusDays(1)));
+	}
+
+	@Test
+	public void rollupIsReadOnStartup() {
+		StorageWriter writer = new StorageWriter(storage, 0);
+		PaymentLedger ledger = new PaymentLedger(storage, writer);
+		ledger.record(payment(NOON, 1000));
+		ledger.record(payment(NOON, 2000));
+		writer.close();
+
+		PaymentLedger reloaded = new PaymentLedger(storage, new StorageWriter(storage, 0));
+		assertEquals(2, reloaded.getRevenue(DATE).getBills());
+		assertEquals(3000, reloaded.getRevenue(DATE).getSubtotal());
+	}
+
+	@Test
+	public void rollsUpAgainWhenPaymentsExtendPastTheRollup() throws Exception {
+		StorageWriter writer = new StorageWriter(storage, 0);
+		PaymentLedger ledger = new PaymentLedger(storage, writer);
+		ledger.record(payment(NOON, 1000));
+		writer.close();
+
+		// As if the process died after appending a payment but before rewriting the rollup
+		storage.appendPayment(DATE, payment(NOON.plusHours(1), 2500).toJSON().toJSONString());
+
+		StorageWriter rewriter = new StorageWriter(storage, 0);
+		PaymentLedger reloaded = new PaymentLedger(storage, rewriter);
+		assertEquals(2, reloaded.getRevenue(DATE).getBills());
+		assertEquals(3500, reloaded.getRevenue(DATE).getSubtotal());
+		rewriter.close();
+
+		// The rollup was rewritten with the new extent, so the next startup reads it as it is
+		JSONObject rollup = (JSONObject) new JSONParser().parse(storage.readRollup(DATE));
+		assertEquals(2L, rollup.get("extent"));
+		assertEquals(3500, Revenue.parse((JSONObject) rollup.get("revenue")).getSubtotal());
+	}
+
+	@Test
+	public void tornLastPaymentIsSkipped() throws Exception {
+		StorageWriter writer = new StorageWriter(storage, 0);
+		PaymentLedger ledger = new PaymentLedger(storage, writer);
+		ledger.record(payment(NOON, 1000));
+		writer.close();
+		storage.appendPayment(DATE, "{\"time\":\"2018-11-20T13:");
+
+		PaymentLedger reloaded = new PaymentLedger(storage, new StorageWriter(storage, 0));
+		assertEquals(1, reloaded.getPayments(DATE).size());
+		assertEquals(1000, reloaded.getRevenue(DATE).getSubtotal());
+	}
+}
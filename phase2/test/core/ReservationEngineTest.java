@@ -0,0 +1,139 @@
+package core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReservationEngineTest {
+	private final ReservationEngine engine = new ReservationEngine();
+	private Ingredient bun;
+	private Ingredient fish;
+
+	@Before
+	public void stock() {
+		bun = new Ingredient("Bun", 0, 1000, 10, false);
+		bun.setId(0);
+		fish = new Ingredient("Fish", 0, 500, 10, false);
+		fish.setId(1);
+	}
+
+	/**
+	 * Builds a vector from a map that lists the ingredients in the order given.
+	 */
+	private static IngredientVector vector(Ingredient first, int firstAmount, Ingredient second, int secondAmount) {
+		LinkedHashMap<Ingredient, Integer> base = new LinkedHashMap<>();
+		base.put(first, firstAmount);
+		base.put(second, secondAmount);
+		return new IngredientVector(base, Collections.emptyMap(), Collections.emptyMap());
+	}
+
+	@Test
+	public void vectorListsIngredientsInIdOrder() {
+		IngredientVector forwards = vector(bun, 2, fish, 1);
+		IngredientVector backwards = vector(fish, 1, bun, 2);
+
+		assertEquals(bun, backwards.getIngredient(0));
+		assertEquals(fish, backwards.getIngredient(1));
+		assertEquals(forwards, backwards);
+	}
+
+	@Test(timeout = 30000)
+	public void locksIngredientsInIdOrder() throws InterruptedException {
+		Thread server = new Thread(() -> engine.reserve(vector(fish, 1, bun, 2)));
+		ThreadInfo info;
+		synchronized (fish) {
+			server.start();
+			while (server.getState() != Thread.State.BLOCKED) {
+				Thread.sleep(1);
+			}
+			info = ManagementFactory.getThreadMXBean().getThreadInfo(new long[]{server.getId()}, true, false)[0];
+		}
+		server.join();
+
+		// Blocked on fish, the higher id, while already holding bun, although the order listed fish first
+		assertEquals(System.identityHashCode(fish), info.getLockInfo().getIdentityHashCode());
+		boolean holdsBun = false;
+		for (MonitorInfo monitor : info.getLockedMonitors()) {
+			if (monitor.getIdentityHashCode() == System.identityHashCode(bun)) holdsBun = true;
+		}
+		assertTrue(holdsBun);
+		assertEquals(1, fish.getReserved());
+	}
+
+	@Test
+	public void reserveIsAllOrNothing() {
+		assertFalse(engine.reserve(vector(bun, 1, fish, 501)));
+		assertEquals(1000, bun.getAmount());
+		assertEquals(0, bun.getReserved());
+		assertEquals(500, fish.getAmount());
+
+		assertTrue(engine.reserve(vector(bun, 2, fish, 1)));
+		assertEquals(998, bun.getAmount());
+		assertEquals(2, bun.getReserved());
+		assertEquals(499, fish.getAmount());
+	}
+
+	@Test
+	public void consumeAndReleaseMoveReservedStock() {
+		IngredientVector order = vector(bun, 2, fish, 1);
+		assertTrue(engine.reserve(order));
+		assertTrue(engine.release(order));
+		assertEquals(1000, bun.getAmount());
+		assertEquals(0, bun.getReserved());
+
+		assertTrue(engine.reserve(order));
+		assertTrue(engine.consume(order));
+		assertEquals(998, bun.getAmount());
+		assertEquals(0, bun.getReserved());
+		assertFalse(engine.consume(order));
+	}
+
+	@Test(timeout = 30000)
+	public void concurrentOrdersNeitherDeadlockNorOverdraw() throws InterruptedException {
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger reserved = new AtomicInteger();
+		Thread[] servers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			// Half the servers list the ingredients the other way round; both vectors are in id order, so no
+			// server ever holds fish while waiting for bun
+			IngredientVector order = t % 2 == 0 ? vector(bun, 2, fish, 1) : vector(fish, 1, bun, 2);
+			servers[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < 1000; i++) {
+					if (engine.reserve(order)) {
+						reserved.incrementAndGet();
+						if (i < 500 && i % 3 == 0 && engine.release(order)) reserved.decrementAndGet();
+					}
+				}
+			});
+			servers[t].start();
+		}
+		start.countDown();
+		for (Thread server : servers) {
+			server.join();
+		}
+
+		// Fish runs out first: 500 orders, and the buns stay in step with them
+		assertEquals(500, reserved.get());
+		assertEquals(0, fish.getAmount());
+		assertEquals(500, fish.getReserved());
+		assertEquals(0, bun.getAmount());
+		assertEquals(1000, bun.getReserved());
+	}
+}
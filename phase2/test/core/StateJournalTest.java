@@ -0,0 +1,142 @@
+package core;
+
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StateJournalTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<StorageWriter> writers = new ArrayList<>();
+
+	@After
+	public void close() {
+		writers.forEach(StorageWriter::close);
+	}
+
+	/**
+	 * Opens a journal over a storage, as a restart would.
+	 */
+	private StateJournal open(StorageBackend storage) {
+		StorageWriter writer = new StorageWriter(storage, 0);
+		writers.add(writer);
+		return new StateJournal(storage, writer);
+	}
+
+	/**
+	 * Journals records numbered n.
+	 */
+	private static void record(StateJournal journal, long... numbers) {
+		for (long n : numbers) {
+			JSONObject record = new JSONObject();
+			record.put("n", n);
+			journal.record(record);
+		}
+		journal.commit();
+	}
+
+	/**
+	 * Waits until every write so far has been performed.
+	 */
+	private void flush() {
+		writers.forEach(StorageWriter::flush);
+	}
+
+	/**
+	 * Replays a journal, returning the numbers of its records.
+	 */
+	private static List<Long> replay(StateJournal journal) {
+		ArrayList<Long> numbers = new ArrayList<>();
+		journal.replay(record -> numbers.add((Long) record.get("n")));
+		return numbers;
+	}
+
+	private static String snapshot(long upTo) {
+		JSONObject snapshot = new JSONObject();
+		snapshot.put("upTo", upTo);
+		return snapshot.toJSONString();
+	}
+
+	@Test
+	public void replaysTheJournalTailOverTheSnapshot() {
+		MemoryStorage storage = new MemoryStorage(null);
+		StateJournal journal = open(storage);
+		record(journal, 1, 2);
+		journal.compact(() -> snapshot(2));
+		record(journal, 3, 4);
+		flush();
+
+		StateJournal restarted = open(storage);
+		assertEquals(2L, restarted.readSnapshot().get("upTo"));
+		assertEquals(Arrays.asList(3L, 4L), replay(restarted));
+		assertEquals(2, restarted.getRecords());
+	}
+
+	@Test
+	public void replaysTheRotatedJournalIfTheSnapshotWasNotWritten() throws IOException {
+		MemoryStorage storage = new MemoryStorage(null);
+		StateJournal journal = open(storage);
+		record(journal, 1, 2);
+		flush();
+		storage.rotateJournal(); // As if the process died before the snapshot was written
+		record(journal, 3);
+		flush();
+
+		StateJournal restarted = open(storage);
+		assertNull(restarted.readSnapshot());
+		assertEquals(Arrays.asList(1L, 2L, 3L), replay(restarted));
+	}
+
+	@Test
+	public void skipsATornLastRecord() throws IOException {
+		File data = folder.getRoot();
+		StateJournal journal = open(new JsonFileStorage(data, null));
+		record(journal, 1, 2);
+		flush();
+		// As if the process died halfway through appending a record
+		Files.write(new File(data, "restaurant.json.journal").toPath(), "{\"n\":3".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		StateJournal restarted = open(new JsonFileStorage(data, null));
+		assertEquals(Arrays.asList(1L, 2L), replay(restarted));
+		assertEquals(2, restarted.getRecords());
+	}
+
+	@Test
+	public void damagedSnapshotFallsBackToThePreviousGeneration() throws IOException {
+		File data = folder.getRoot();
+		StateJournal journal = open(new JsonFileStorage(data, null));
+		record(journal, 1);
+		journal.compact(() -> snapshot(1));
+		flush();
+		record(journal, 2);
+		journal.compact(() -> snapshot(2));
+		flush();
+		record(journal, 3);
+		flush();
+
+		File latest = new File(data, "restaurant.json");
+		byte[] bytes = Files.readAllBytes(latest.toPath());
+		Files.write(latest.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+
+		// The snapshot before it is read, and the records it does not cover are replayed before the rest
+		StateJournal restarted = open(new JsonFileStorage(data, null));
+		assertEquals(1L, restarted.readSnapshot().get("upTo"));
+		assertEquals(Arrays.asList(2L, 3L), replay(restarted));
+	}
+}
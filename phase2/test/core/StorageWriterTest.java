@@ -0,0 +1,99 @@
+package core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StorageWriterTest {
+	/**
+	 * A MemoryStorage that counts its syncs.
+	 */
+	private static class CountingStorage extends MemoryStorage {
+		final AtomicInteger syncs = new AtomicInteger();
+
+		CountingStorage() {
+			super(null);
+		}
+
+		@Override
+		public void sync() {
+			syncs.incrementAndGet();
+		}
+	}
+
+	private final CountingStorage storage = new CountingStorage();
+	private StorageWriter writer;
+
+	@After
+	public void close() {
+		if (writer != null) writer.close();
+	}
+
+	@Test
+	public void keyedWritesCoalesce() throws Exception {
+		writer = new StorageWriter(storage, 0);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+		// Hold the writer on a first write so the rest queue up behind it
+		writer.submit(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		writer.submit("rollup", () -> written.add("rollup 1"));
+		writer.submit(() -> written.add("payment"));
+		writer.submit("rollup", () -> written.add("rollup 2"));
+		writer.submit("rollup", () -> written.add("rollup 3"));
+		release.countDown();
+		writer.flush();
+
+		// Only the last rollup is written, and it moved behind the payment submitted after the first one
+		assertEquals(Arrays.asList("payment", "rollup 3"), written);
+	}
+
+	@Test
+	public void flushWaitsForWritesAndSync() {
+		writer = new StorageWriter(storage, TimeUnit.HOURS.toMillis(1));
+		AtomicInteger written = new AtomicInteger();
+		for (int i = 0; i < 100; i++) {
+			writer.submit(written::incrementAndGet);
+		}
+
+		long start = System.nanoTime();
+		writer.flush();
+		assertTrue("flush() waited for the group-commit interval",
+				System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+		assertEquals(100, written.get());
+		assertTrue(storage.syncs.get() >= 1);
+		assertTrue("writes were not grouped", storage.syncs.get() <= 2);
+	}
+
+	@Test
+	public void writesAfterCloseAreDropped() {
+		writer = new StorageWriter(storage, 0);
+		AtomicInteger written = new AtomicInteger();
+		writer.submit(written::incrementAndGet);
+		writer.close();
+		writer.submit(written::incrementAndGet);
+		writer.flush();
+
+		assertEquals(1, written.get());
+	}
+}